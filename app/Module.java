@@ -3,6 +3,7 @@ import java.time.Clock;
 
 import services.ApplicationTimer;
 import services.AtomicCounter;
+import services.CatalogLoader;
 import services.Counter;
 
 /**
@@ -24,6 +25,8 @@ public class Module extends AbstractModule {
         // Ask Guice to createUser an instance of ApplicationTimer when the
         // application starts.
         bind(ApplicationTimer.class).asEagerSingleton();
+        // Load the Pizza-Rush catalog when the application starts and keep it up to date.
+        bind(CatalogLoader.class).asEagerSingleton();
         // Set AtomicCounter as the implementation for Counter.
         bind(Counter.class).to(AtomicCounter.class);
     }
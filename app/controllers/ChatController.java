@@ -0,0 +1,79 @@
+package controllers;
+
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import models.factory.UserFactory;
+import play.libs.F;
+import play.libs.streams.ActorFlow;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.WebSocket;
+import services.ChatHub;
+import services.ChatSocketActor;
+
+import javax.inject.Inject;
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The type Chat controller.
+ * Opens the sockets new chat messages are pushed through.
+ */
+public class ChatController extends Controller {
+
+    private final UserFactory userFactory;
+    private final ChatHub chatHub;
+    private final ActorSystem actorSystem;
+    private final Materializer materializer;
+
+    /**
+     * Instantiates a new Chat controller.
+     *
+     * @param userFactory  the user factory
+     * @param chatHub      the chat hub
+     * @param actorSystem  the actor system
+     * @param materializer the materializer
+     */
+    @Inject
+    public ChatController(UserFactory userFactory, ChatHub chatHub, ActorSystem actorSystem, Materializer materializer) {
+        this.userFactory = userFactory;
+        this.chatHub = chatHub;
+        this.actorSystem = actorSystem;
+        this.materializer = materializer;
+    }
+
+    /**
+     * Opens a socket that receives every message sent to the logged in user.
+     *
+     * @return the web socket, or forbidden if there is no logged in user or the request comes from another site
+     */
+    public WebSocket chatSocket() {
+        return WebSocket.Json.acceptOrResult(request -> {
+            if (!isSameOrigin(request)) {
+                return CompletableFuture.completedFuture(F.Either.Left(forbidden("Cross-site socket")));
+            }
+            Optional<String> email = request.session().get("email");
+            UserFactory.User user = email.isPresent() ? userFactory.getUserByEmail(email.get()) : null;
+            if (user == null) {
+                return CompletableFuture.completedFuture(F.Either.Left(forbidden("Can't identify User")));
+            }
+            int userId = user.getId();
+            return CompletableFuture.completedFuture(F.Either.Right(
+                    ActorFlow.actorRef(out -> ChatSocketActor.props(out, userId, chatHub), actorSystem, materializer)));
+        });
+    }
+
+    /**
+     * Browsers send the session cookie with sockets opened by any site, so only our own pages may open one.
+     */
+    private boolean isSameOrigin(Http.RequestHeader request) {
+        Optional<String> origin = request.header("Origin");
+        if (!origin.isPresent()) return false;
+        try {
+            return request.host().equalsIgnoreCase(URI.create(origin.get()).getAuthority());
+        } catch (IllegalArgumentException invalidOrigin) {
+            return false;
+        }
+    }
+}
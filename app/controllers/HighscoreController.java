@@ -1,8 +1,12 @@
 package controllers;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import models.factory.Leaderboard;
 import models.factory.UserFactory;
+import models.factory.WindowedLeaderboards;
 import play.libs.Json;
 import play.mvc.Controller;
+import play.mvc.Http;
 import play.mvc.Result;
 
 import javax.inject.Inject;
@@ -11,16 +15,24 @@ import javax.inject.Inject;
  * The type Highscore controller.
  */
 public class HighscoreController extends Controller {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final UserFactory userFactory;
+    private final Leaderboard leaderboard;
+    private final WindowedLeaderboards windowedLeaderboards;
 
     /**
      * Instantiates a new Highscore controller.
      *
-     * @param userFactory the user factory
+     * @param userFactory          the user factory
+     * @param leaderboard          the leaderboard
+     * @param windowedLeaderboards the daily and weekly leaderboards
      */
     @Inject
-    public HighscoreController(UserFactory userFactory) {
+    public HighscoreController(UserFactory userFactory, Leaderboard leaderboard, WindowedLeaderboards windowedLeaderboards) {
         this.userFactory = userFactory;
+        this.leaderboard = leaderboard;
+        this.windowedLeaderboards = windowedLeaderboards;
     }
 
     /**
@@ -32,4 +44,121 @@ public class HighscoreController extends Controller {
         return ok(Json.toJson(userFactory.getHighscoreData()));
     }
 
+    /**
+     * Gets the daily or weekly Highscore-table data.
+     *
+     * @param window "daily" or "weekly"
+     * @return the positions of the best 10 games in the current window
+     */
+    public Result getWindowTableData(String window) {
+        WindowedLeaderboards.Window parsed = parseWindow(window);
+        if (parsed == null) {
+            return badRequest("Unknown window " + window);
+        }
+        return ok(Json.toJson(windowedLeaderboards.getTop(parsed, 10)));
+    }
+
+    /**
+     * Gets the daily or weekly rank of the logged in user.
+     *
+     * @param window  "daily" or "weekly"
+     * @param request the request
+     * @return the position containing rank, username and best score in the current window
+     */
+    public Result getWindowRank(String window, Http.Request request) {
+        WindowedLeaderboards.Window parsed = parseWindow(window);
+        if (parsed == null) {
+            return badRequest("Unknown window " + window);
+        }
+        String email;
+        if (request.session().get("email").isPresent()) {
+            email = request.session().get("email").get();
+        } else {
+            return badRequest("Can't identify User: No E-Mail in session");
+        }
+
+        UserFactory.User user = userFactory.getUserByEmail(email);
+        if (user == null) {
+            return badRequest("Can't identify User: No User with this E-Mail");
+        }
+
+        Leaderboard.Position position = windowedLeaderboards.getPosition(parsed, user.getId());
+        if (position == null) {
+            return notFound("User hasn't played in this window");
+        }
+        return ok(Json.toJson(position));
+    }
+
+    /**
+     * Gets rank and highscore of the logged in user.
+     *
+     * @param request the request
+     * @return the position containing rank, username and highscore
+     */
+    public Result getRank(Http.Request request) {
+        String email;
+        if (request.session().get("email").isPresent()) {
+            email = request.session().get("email").get();
+        } else {
+            return badRequest("Can't identify User: No E-Mail in session");
+        }
+
+        UserFactory.User user = userFactory.getUserByEmail(email);
+        if (user == null) {
+            return badRequest("Can't identify User: No User with this E-Mail");
+        }
+
+        Leaderboard.Position position = leaderboard.getPosition(user.getId());
+        if (position == null) {
+            return notFound("User isn't on the leaderboard");
+        }
+        return ok(Json.toJson(position));
+    }
+
+    /**
+     * Gets the leaderboard of the logged in user and its friends.
+     *
+     * @param request the request
+     * @return the positions ranked among the friends
+     */
+    public Result getFriendsBoard(Http.Request request) {
+        String email;
+        if (request.session().get("email").isPresent()) {
+            email = request.session().get("email").get();
+        } else {
+            return badRequest("Can't identify User: No E-Mail in session");
+        }
+
+        UserFactory.User user = userFactory.getUserByEmail(email);
+        if (user == null) {
+            return badRequest("Can't identify User: No User with this E-Mail");
+        }
+        return ok(Json.toJson(user.getFriendsLeaderboard()));
+    }
+
+    /**
+     * Gets a page of the leaderboard.
+     *
+     * @param page the 1-based page number
+     * @param size the number of entries per page, at most 100
+     * @return the page containing the positions and the total number of users
+     */
+    public Result getPage(int page, int size) {
+        if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+            return badRequest("page must be at least 1 and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        ObjectNode result = Json.newObject();
+        result.put("page", page);
+        result.put("size", size);
+        result.put("total", leaderboard.getSize());
+        result.set("positions", Json.toJson(leaderboard.getPage(page, size)));
+        return ok(result);
+    }
+
+    private WindowedLeaderboards.Window parseWindow(String window) {
+        for (WindowedLeaderboards.Window value : WindowedLeaderboards.Window.values()) {
+            if (value.name().equalsIgnoreCase(window)) return value;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,52 @@
+package controllers;
+
+import models.factory.ImageStore;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import javax.inject.Inject;
+
+/**
+ * Serves the images of the {@link ImageStore}.
+ * The url of an image contains the hash of its content, so the response never changes and can be cached forever.
+ */
+public class ImageController extends Controller {
+
+    private final ImageStore imageStore;
+
+    /**
+     * Instantiates a new Image controller.
+     *
+     * @param imageStore the image store
+     */
+    @Inject
+    public ImageController(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    /**
+     * Gets an image by the hash of its content.
+     *
+     * @param hash    the hash
+     * @param request the request
+     * @return the image, notModified if the client already has it or notFound if there is no such image
+     */
+    public Result getImage(String hash, Http.Request request) {
+        byte[] image = imageStore.get(hash);
+        if (image == null) {
+            return notFound("No image with this hash");
+        }
+
+        String etag = "\"" + hash + "\"";
+        if (request.header(IF_NONE_MATCH).map(etag::equals).orElse(false)) {
+            return status(NOT_MODIFIED)
+                    .withHeader(ETAG, etag)
+                    .withHeader(CACHE_CONTROL, "public, max-age=31536000, immutable");
+        }
+        return ok(image)
+                .as(ImageStore.getContentType(image))
+                .withHeader(ETAG, etag)
+                .withHeader(CACHE_CONTROL, "public, max-age=31536000, immutable");
+    }
+}
@@ -40,16 +40,16 @@ public class MemoryController extends Controller {
 
         UserFactory.User user = userFactory.getUserByEmail(email);
 
-        List<MemoryFactory.MemoryIngredient> ingredients;
+        if (user == null) {
+            return badRequest("Can't identify User: No User with this E-Mail");
+        }
 
+        int tier = user.getCurrentTier();
         if (levelUp.checkForLevelUp(user).isLevelUpPossible()) {
-            ingredients = memoryFactory.getMemoryIngredientsForNextTier(email);
-        } else {
-            ingredients = memoryFactory.getMemoryIngredients(email);
+            tier++;
         }
 
-        String json = listToJson(ingredients);
-        return ok(json);
+        return SerializedResults.toResult(memoryFactory.getDeckJson(tier), request);
     }
 
     /**
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import models.PizzaValidation;
 import models.factory.PizzaRushFactory;
 import models.factory.UserFactory;
+import models.factory.WindowedLeaderboards;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
@@ -24,17 +25,20 @@ public class PizzaRushController extends Controller {
 
     private final PizzaRushFactory pizzaRushFactory;
     private final UserFactory userFactory;
+    private final WindowedLeaderboards windowedLeaderboards;
 
     /**
      * Instantiates a new Pizza rush controller.
      *
-     * @param pizzaRushFactory the pizza rush factory
-     * @param userFactory      the user factory
+     * @param pizzaRushFactory     the pizza rush factory
+     * @param userFactory          the user factory
+     * @param windowedLeaderboards the daily and weekly leaderboards
      */
     @Inject
-    public PizzaRushController(PizzaRushFactory pizzaRushFactory, UserFactory userFactory) {
+    public PizzaRushController(PizzaRushFactory pizzaRushFactory, UserFactory userFactory, WindowedLeaderboards windowedLeaderboards) {
         this.pizzaRushFactory = pizzaRushFactory;
         this.userFactory = userFactory;
+        this.windowedLeaderboards = windowedLeaderboards;
     }
 
 
@@ -125,8 +129,11 @@ public class PizzaRushController extends Controller {
             if (user == null) {
                 return badRequest("user co uld be fetched via mail");
             }
+            // the points gained in this game are its score on the daily and weekly leaderboards
+            int gainedPoints = newTotalPoints - user.getTotalPoints();
             user.setTotalPoints(newTotalPoints);
             user.setHighScore(newHighscore);//TODO: if highscore is lower then old highscore, it shouldnt be updated
+            windowedLeaderboards.submit(user.getId(), user.getUsername(), gainedPoints);
             return ok("TotalPoints and Highscore successfully updated");
         }
     }
@@ -155,9 +162,12 @@ public class PizzaRushController extends Controller {
             return badRequest("Can't identify User: No E-Mail in session");
         }
 
-        List<PizzaRushFactory.Ingredient> ingredients = pizzaRushFactory.getIngredients(email);
-        String json = listToJson(ingredients);
-        return ok(json);
+        UserFactory.User user = userFactory.getUserByEmail(email);
+        if (user == null) {
+            return badRequest("Can't identify User: No User with this E-Mail");
+        }
+
+        return SerializedResults.toResult(pizzaRushFactory.getCatalog().getIngredientsJson(user.getCurrentTier()), request);
     }
 
     /**
@@ -174,12 +184,24 @@ public class PizzaRushController extends Controller {
             return badRequest("Can't identify User: No E-Mail in session");
         }
 
-        List<PizzaRushFactory.Order> orders = pizzaRushFactory.getPizzas(email);
-        String json = listToJson(orders);
-        return ok(json);
+        UserFactory.User user = userFactory.getUserByEmail(email);
+        if (user == null) {
+            return badRequest("Can't identify User: No User with this E-Mail");
+        }
+
+        return SerializedResults.toResult(pizzaRushFactory.getCatalog().getPizzasJson(user.getCurrentTier()), request);
     }
 
 
+    /**
+     * Gets the version of the catalog; it changes whenever ingredients or pizzas change.
+     *
+     * @return the catalog version
+     */
+    public Result getCatalogVersion() {
+        return ok(Long.toString(pizzaRushFactory.getCatalog().getVersion())).withHeader(CACHE_CONTROL, "no-cache");
+    }
+
     /**
      * Converts any List to json string.
      *
@@ -1,6 +1,8 @@
 package controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import models.Message;
 import models.factory.UserFactory;
 import models.factory.factoryExceptions.InvalidEmailException;
@@ -12,6 +14,8 @@ import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
+import services.ChatHub;
+import viewmodels.ProfileViewModel;
 import viewmodels.UserViewModel;
 
 import javax.inject.Inject;
@@ -24,19 +28,24 @@ import java.util.List;
  */
 public class ProfileController extends Controller {
 
+    private static final int MESSAGE_PAGE_SIZE = 50;
+
     private final FormFactory formFactory;
     private final UserFactory userFactory;
+    private final ChatHub chatHub;
 
     /**
      * Instantiates a new Profile controller.
      *
      * @param formFactory the form factory
      * @param userFactory the user factory
+     * @param chatHub     the chat hub
      */
     @Inject
-    public ProfileController(FormFactory formFactory, UserFactory userFactory) {
+    public ProfileController(FormFactory formFactory, UserFactory userFactory, ChatHub chatHub) {
         this.formFactory = formFactory;
         this.userFactory = userFactory;
+        this.chatHub = chatHub;
     }
 
     /**
@@ -88,6 +97,40 @@ public class ProfileController extends Controller {
         return ok();
     }
 
+    /**
+     * Gets everything the profile page shows about the logged in user.
+     *
+     * @param request the request
+     * @return the profile as json
+     */
+    public Result getProfile(Http.Request request) {
+        UserFactory.User user = getCurrentUser(request);
+        return ok(Json.toJson(new ProfileViewModel(user)));
+    }
+
+    /**
+     * Gets everything the profile page shows about a friend of the logged in user.
+     *
+     * @param request  the request
+     * @param username the username of the friend
+     * @return the profile as json, notFound if there is no user with the username or forbidden if it isn't a friend
+     */
+    public Result getFriendProfile(Http.Request request, String username) {
+        if (!request.session().get("email").isPresent()) {
+            return unauthorized("Can't identify User: No E-Mail in session");
+        }
+        UserFactory.User currentUser = getCurrentUser(request);
+        UserFactory.User user = userFactory.getUserByUsername(username);
+        if (currentUser == null || user == null) {
+            return notFound("username not valid");
+        }
+        // the profile contains the email, so only friends get to see it
+        if (!currentUser.isFriend(user)) {
+            return forbidden("Only friends can see this profile");
+        }
+        return ok(Json.toJson(new ProfileViewModel(user)));
+    }
+
     /**
      * Gets email from session.
      *
@@ -189,7 +232,10 @@ public class ProfileController extends Controller {
      * @return gibt Messages mit bestimmtem Freund zurück
      */
     public Result getMessagesFromDatabase(Http.Request request) {
-        String username = request.body().asJson().asText();
+        JsonNode body = request.body().asJson();
+        if (body.has("since")) return getNewMessages(request, body);
+
+        String username = body.asText();
         UserFactory.User user1 = getCurrentUser(request);
         UserFactory.User user2 = userFactory.getUserByUsername(username);
         List<Message> messages = user1.getMessages(user2);
@@ -198,18 +244,82 @@ public class ProfileController extends Controller {
     }
 
     /**
-     * Inserts a sent message into Message-Table in db.
+     * Gets the messages the chat partner sent since the newest one the client has,
+     * the body is {username, since, skip} with since being the time of that message.
+     * Without new messages the response is just an empty array.
+     */
+    private Result getNewMessages(Http.Request request, JsonNode body) {
+        Timestamp since;
+        try {
+            since = Timestamp.valueOf(body.get("since").asText());
+        } catch (IllegalArgumentException invalidTime) {
+            return badRequest("Invalid since");
+        }
+        UserFactory.User user1 = getCurrentUser(request);
+        UserFactory.User user2 = userFactory.getUserByUsername(body.path("username").asText());
+        List<Message> messages = user1.getMessagesSince(user2, since, body.path("skip").asInt(0));
+        return ok(Json.toJson(messages));
+    }
+
+    /**
+     * Gets one page of the chat with a friend, the body is {username, before, beforeId}.
+     * Without before it is the newest page, otherwise the page before the oldest message the client has, given by its time and id.
      *
      * @param request the request
-     * @return the result
+     * @return the result with the messages in chronological order and whether there are older ones
+     */
+    public Result getMessageHistory(Http.Request request) {
+        JsonNode body = request.body().asJson();
+        Timestamp before = null;
+        if (body.hasNonNull("before")) {
+            try {
+                before = Timestamp.valueOf(body.get("before").asText());
+            } catch (IllegalArgumentException invalidTime) {
+                return badRequest("Invalid before");
+            }
+        }
+        UserFactory.User user1 = getCurrentUser(request);
+        UserFactory.User user2 = userFactory.getUserByUsername(body.path("username").asText());
+        // one more than a page tells whether there is an older one
+        List<Message> messages = user1.getMessageHistory(user2, before, body.path("beforeId").asInt(0), MESSAGE_PAGE_SIZE + 1);
+        if (messages == null) return ok(Json.toJson(null));
+
+        boolean hasMore = messages.size() > MESSAGE_PAGE_SIZE;
+        ObjectNode page = Json.newObject();
+        page.set("messages", Json.toJson(hasMore ? messages.subList(1, messages.size()) : messages));
+        page.put("hasMore", hasMore);
+        return ok(page);
+    }
+
+    /**
+     * Inserts a sent message into Message-Table in db and pushes it to the receiver.
+     *
+     * @param request the request
+     * @return the result, forbidden if the receiver isn't a friend of the sender
      */
     public Result sendMessage(Http.Request request) {
         UserFactory.User sender = getCurrentUser(request);
         UserFactory.User receiver = userFactory.getUserByUsername(request.body().asJson().get("receiver").asText());
+        if (receiver == null) {
+            return badRequest("username not valid");
+        }
+        // only friends can chat, checked before the message is queued or pushed
+        if (!sender.isFriend(receiver)) {
+            return forbidden("Only friends can send each other messages");
+        }
         String message_text = request.body().asJson().get("message_text").asText();
         long time = request.body().asJson().get("time").asLong();
         Timestamp timestampSQL = new Timestamp(time + 3600000); //milliseconds to add for localTime
-        sender.sendMessage(receiver.getId(), timestampSQL, message_text);
+        timestampSQL.setNanos(0); //Message stores whole seconds, the pushed copy has to carry the same time
+        if (!sender.sendMessage(receiver.getId(), timestampSQL, message_text)) {
+            return status(SERVICE_UNAVAILABLE, "Message could not be sent, try again");
+        }
+
+        // push the message to the receiver's open chats
+        Message message = new Message(sender.getId(), receiver.getId(), timestampSQL.toString(), message_text);
+        message.setSenderName(sender.getUsername());
+        message.setReceiverName(receiver.getUsername());
+        chatHub.publish(receiver.getId(), Json.toJson(message));
         return ok();
     }
 
@@ -0,0 +1,39 @@
+package controllers;
+
+import models.factory.SerializedResponse;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import static play.mvc.Results.ok;
+import static play.mvc.Results.status;
+
+/**
+ * Writes a {@link SerializedResponse} as result, answering with notModified if the client already has it.
+ */
+final class SerializedResults {
+
+    private SerializedResults() {
+    }
+
+    /**
+     * Creates the result for a serialized response.
+     *
+     * @param response the serialized response
+     * @param request  the request
+     * @return the result
+     */
+    static Result toResult(SerializedResponse response, Http.Request request) {
+        if (request.header(Http.HeaderNames.IF_NONE_MATCH).map(response.getEtag()::equals).orElse(false)) {
+            return status(Http.Status.NOT_MODIFIED).withHeader(Http.HeaderNames.ETAG, response.getEtag());
+        }
+
+        boolean acceptsGzip = request.header(Http.HeaderNames.ACCEPT_ENCODING).map(encoding -> encoding.contains("gzip")).orElse(false);
+        Result result = acceptsGzip
+                ? ok(response.getGzipped()).withHeader(Http.HeaderNames.CONTENT_ENCODING, "gzip")
+                : ok(response.getJson());
+        return result
+                .as(Http.MimeTypes.JSON)
+                .withHeader(Http.HeaderNames.ETAG, response.getEtag())
+                .withHeader(Http.HeaderNames.VARY, Http.HeaderNames.ACCEPT_ENCODING);
+    }
+}
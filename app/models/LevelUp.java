@@ -1,12 +1,9 @@
 package models;
 
+import models.factory.TierTable;
 import models.factory.UserFactory;
-import play.db.Database;
 
 import javax.inject.Inject;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.util.ArrayList;
 
 /**
  * The type LevelUp.
@@ -14,16 +11,16 @@ import java.util.ArrayList;
  */
 public class LevelUp {
 
-    private final Database db;
+    private final TierTable tierTable;
 
     /**
      * Instantiates a new LevelUp.
      *
-     * @param db the db
+     * @param tierTable the tier table
      */
     @Inject
-    public LevelUp(Database db) {
-        this.db = db;
+    public LevelUp(TierTable tierTable) {
+        this.tierTable = tierTable;
     }
 
     /**
@@ -37,39 +34,17 @@ public class LevelUp {
         int userCurrentTier = user.getCurrentTier();
         int userNextTier = userCurrentTier + 1;
 
-        return db.withConnection(conn -> {
-            String sql = "SELECT * FROM Tier";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
-
-
-            ArrayList<String[]> rsAsList = new ArrayList<>();
-            while (rs.next())
-                rsAsList.add(new String[]{rs.getString("idTier"), rs.getString("name"), rs.getString("gesamtpunkte")});
-
-            int iHighestPossibleTier = 0;
-            for (int i = 0; i < rsAsList.size(); i++) {
-                String[] current = rsAsList.get(i);
-
-                if (Integer.parseInt(current[2]) <= userTotalPoints)
-                    iHighestPossibleTier = i;
-            }
-
-            String[] nextPossibleTier = rsAsList.get(iHighestPossibleTier);
-            String[] currentTier = rsAsList.get(userCurrentTier - 1);
-            boolean isLevelUpPossible = Integer.parseInt(rsAsList.get(iHighestPossibleTier)[0]) > userCurrentTier;
-
-            if (isLevelUpPossible) {
-                nextPossibleTier = rsAsList.get(userNextTier - 1);
-            }
-
-            if (isLevelUpPossible) // User can level up
-                return new LevelUpViewModel(true, nextPossibleTier[1], Integer.parseInt(nextPossibleTier[2]), userNextTier, Integer.parseInt(currentTier[2]));
-            else if (iHighestPossibleTier < rsAsList.size() - 1) // User can't level up yet
-                return new LevelUpViewModel(false, rsAsList.get(iHighestPossibleTier + 1)[1], Integer.parseInt(rsAsList.get(iHighestPossibleTier + 1)[2]), userNextTier, Integer.parseInt(currentTier[2]));
-            else // User already is highest level
-                return new LevelUpViewModel(false, "", -1, userNextTier, Integer.parseInt(currentTier[2]));
-        });
+        TierTable.Tiers tiers = tierTable.getTiers();
+        int iHighestPossibleTier = tiers.getHighestReachedIndex(userTotalPoints);
+        int currentTierPoints = tiers.getPointsAt(userCurrentTier - 1);
+        boolean isLevelUpPossible = tiers.getId(iHighestPossibleTier) > userCurrentTier;
+
+        if (isLevelUpPossible) // User can level up
+            return new LevelUpViewModel(true, tiers.getNameAt(userNextTier - 1), tiers.getPointsAt(userNextTier - 1), userNextTier, currentTierPoints);
+        else if (iHighestPossibleTier < tiers.size() - 1) // User can't level up yet
+            return new LevelUpViewModel(false, tiers.getNameAt(iHighestPossibleTier + 1), tiers.getPointsAt(iHighestPossibleTier + 1), userNextTier, currentTierPoints);
+        else // User already is highest level
+            return new LevelUpViewModel(false, "", -1, userNextTier, currentTierPoints);
     }
 
     /**
@@ -8,6 +8,7 @@ import java.sql.SQLException;
  * It represents a message, that two users can send each other
  */
 public class Message {
+    private final int id;
     private final int sender;
     private final int receiver;
     private final String time;
@@ -15,6 +16,35 @@ public class Message {
     private String senderName;
     private String receiverName;
 
+    /**
+     * Instantiates a new Message that isn't written yet, so it has no id.
+     *
+     * @param sender       the id of the sender
+     * @param receiver     the id of the receiver
+     * @param time         the time
+     * @param message_text the message text
+     */
+    public Message(int sender, int receiver, String time, String message_text) {
+        this(0, sender, receiver, time, message_text);
+    }
+
+    /**
+     * Instantiates a new Message.
+     *
+     * @param id           the id of the message
+     * @param sender       the id of the sender
+     * @param receiver     the id of the receiver
+     * @param time         the time
+     * @param message_text the message text
+     */
+    public Message(int id, int sender, int receiver, String time, String message_text) {
+        this.id = id;
+        this.sender = sender;
+        this.receiver = receiver;
+        this.time = time;
+        this.message_text = message_text;
+    }
+
     /**
      * Instantiates a new Message.
      *
@@ -22,12 +52,22 @@ public class Message {
      * @throws SQLException the sql exception
      */
     public Message(ResultSet rs) throws SQLException {
+        this.id = rs.getInt("idMessage");
         this.sender = rs.getInt("sender");
         this.receiver = rs.getInt("receiver");
         this.time = rs.getString("time");
         this.message_text = rs.getString("message_text");
     }
 
+    /**
+     * Gets id, it is 0 until the message is written.
+     *
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Gets sender.
      *
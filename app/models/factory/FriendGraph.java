@@ -0,0 +1,157 @@
+package models.factory;
+
+import play.db.Database;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the Friendship table as sorted int arrays of friend ids per user.
+ * It is loaded once from the database and then kept up to date by {@link UserFactory.User#addFriend(int)}
+ * and {@link UserFactory.User#delete()}, so looking up friend ids never touches the database.
+ * The arrays are never changed once they are in the map, so lookups don't need a lock.
+ */
+@Singleton
+public class FriendGraph {
+
+    private static final int[] NO_FRIENDS = new int[0];
+
+    private final Database db;
+
+    private final Map<Integer, int[]> friendIdsByUserId = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Instantiates a new Friend graph.
+     *
+     * @param db the db
+     */
+    @Inject
+    public FriendGraph(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Gets the ids of a user's friends.
+     *
+     * @param userId the user id
+     * @return a copy of the friend ids in ascending order
+     */
+    public int[] getFriendIds(int userId) {
+        load();
+        return friendIdsByUserId.getOrDefault(userId, NO_FRIENDS).clone();
+    }
+
+    /**
+     * Checks if two users are friends.
+     *
+     * @param userId   the user id
+     * @param friendId the id of the other user
+     * @return true if there is a friendship in either direction
+     */
+    public boolean areFriends(int userId, int friendId) {
+        load();
+        return Arrays.binarySearch(friendIdsByUserId.getOrDefault(userId, NO_FRIENDS), friendId) >= 0;
+    }
+
+    /**
+     * Adds a friendship that was saved to the database.
+     * Does nothing if the graph hasn't been loaded yet, the load will see the saved friendship.
+     *
+     * @param userId   the user id
+     * @param friendId the id of the other user
+     */
+    public synchronized void addFriendship(int userId, int friendId) {
+        if (!loaded) return;
+        friendIdsByUserId.put(userId, with(friendIdsByUserId.getOrDefault(userId, NO_FRIENDS), friendId));
+        friendIdsByUserId.put(friendId, with(friendIdsByUserId.getOrDefault(friendId, NO_FRIENDS), userId));
+    }
+
+    /**
+     * Removes a user and all its friendships.
+     *
+     * @param userId the user id
+     */
+    public synchronized void removeUser(int userId) {
+        int[] friendIds = friendIdsByUserId.remove(userId);
+        if (friendIds == null) return;
+        for (int friendId : friendIds) {
+            int[] ofFriend = friendIdsByUserId.get(friendId);
+            if (ofFriend != null) friendIdsByUserId.put(friendId, without(ofFriend, userId));
+        }
+    }
+
+    private void load() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            Map<Integer, int[]> loading = new HashMap<>();
+            Map<Integer, Integer> sizes = new HashMap<>();
+            db.withConnection(conn -> {
+                PreparedStatement stmt = conn.prepareStatement("SELECT User_idUser_one, User_idUser_two FROM `Friendship`");
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    int userId = rs.getInt("User_idUser_one");
+                    int friendId = rs.getInt("User_idUser_two");
+                    append(loading, sizes, userId, friendId);
+                    append(loading, sizes, friendId, userId);
+                }
+                stmt.close();
+            });
+            for (Map.Entry<Integer, int[]> entry : loading.entrySet()) {
+                int[] friendIds = Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey()));
+                Arrays.sort(friendIds);
+                friendIdsByUserId.put(entry.getKey(), distinct(friendIds));
+            }
+            loaded = true;
+        }
+    }
+
+    private static void append(Map<Integer, int[]> loading, Map<Integer, Integer> sizes, int userId, int friendId) {
+        int size = sizes.getOrDefault(userId, 0);
+        int[] friendIds = loading.getOrDefault(userId, NO_FRIENDS);
+        if (size == friendIds.length) {
+            friendIds = Arrays.copyOf(friendIds, Math.max(4, size * 2));
+            loading.put(userId, friendIds);
+        }
+        friendIds[size] = friendId;
+        sizes.put(userId, size + 1);
+    }
+
+    /**
+     * Removes duplicates from a sorted array, friendships may have been saved in both directions.
+     */
+    private static int[] distinct(int[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[size++] = sorted[i];
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private static int[] with(int[] sorted, int id) {
+        int index = Arrays.binarySearch(sorted, id);
+        if (index >= 0) return sorted;
+        index = -index - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        result[index] = id;
+        System.arraycopy(sorted, index, result, index + 1, sorted.length - index);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int id) {
+        int index = Arrays.binarySearch(sorted, id);
+        if (index < 0) return sorted;
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+}
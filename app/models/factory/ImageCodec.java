@@ -0,0 +1,163 @@
+package models.factory;
+
+import com.typesafe.config.Config;
+import models.factory.factoryExceptions.ProfilePictureException;
+
+import javax.imageio.ImageIO;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encodes images as data-uri.
+ * The results are kept in a LRU-cache keyed by the content hash of the image, which is limited
+ * to "imageCodec.cacheBytes" bytes of encoded Strings (16 MB by default).
+ */
+@Singleton
+public class ImageCodec {
+
+    private static final long DEFAULT_CACHE_BYTES = 16 * 1024 * 1024;
+
+    private final long maxCacheBytes;
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Instantiates a new Image codec with the cache size from the configuration.
+     *
+     * @param config the config
+     */
+    @Inject
+    public ImageCodec(Config config) {
+        this(config.hasPath("imageCodec.cacheBytes") ? config.getBytes("imageCodec.cacheBytes") : DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Instantiates a new Image codec.
+     *
+     * @param maxCacheBytes the maximum number of bytes of encoded Strings in the cache
+     */
+    public ImageCodec(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Encodes stored image bytes as data-uri without decoding them.
+     *
+     * @param bytes the PNG or JPEG bytes
+     * @return the data-uri
+     */
+    public String encode(byte[] bytes) {
+        String type = StoredImages.getType(bytes);
+        if (type == null) {
+            throw new ProfilePictureException("Unknown image type");
+        }
+
+        String hash = StoredImages.hash(bytes);
+        String cached;
+        synchronized (cache) {
+            cached = cache.get(hash);
+        }
+        if (cached != null) {
+            hits.increment();
+            bytesSaved.add(cached.length());
+            return cached;
+        }
+
+        misses.increment();
+        String encoded = toDataUri(bytes, type);
+        put(hash, encoded);
+        return encoded;
+    }
+
+    /**
+     * Encodes an image as data-uri.
+     *
+     * @param image the image
+     * @param type  the type, e.g. "png" or "jpg"
+     * @return the data-uri or null if the image couldn't be written
+     */
+    public String encode(BufferedImage image, String type) {
+        // the compressed image is usually much smaller than its raw pixels
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(1024, image.getWidth() * image.getHeight() / 2));
+        try {
+            if (!ImageIO.write(image, type, bos)) {
+                return null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return encode(bos.toByteArray());
+    }
+
+    private static String toDataUri(byte[] bytes, String type) {
+        byte[] encoded = new byte[4 * ((bytes.length + 2) / 3)];
+        Base64.getEncoder().encode(bytes, encoded);
+        return "data:image/" + type + ";base64," + new String(encoded, StandardCharsets.US_ASCII);
+    }
+
+    private void put(String hash, String encoded) {
+        if (encoded.length() > maxCacheBytes) return;
+        synchronized (cache) {
+            if (cache.put(hash, encoded) == null) {
+                cacheBytes += encoded.length();
+            }
+            Iterator<Map.Entry<String, String>> eldest = cache.entrySet().iterator();
+            while (cacheBytes > maxCacheBytes && eldest.hasNext()) {
+                cacheBytes -= eldest.next().getValue().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of encodings answered from the cache.
+     *
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of encodings that weren't in the cache.
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of encoded bytes that were answered from the cache instead of being encoded again.
+     *
+     * @return the bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Gets the number of bytes of encoded Strings currently in the cache.
+     *
+     * @return the cache bytes
+     */
+    public long getCacheBytes() {
+        synchronized (cache) {
+            return cacheBytes;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package models.factory;
+
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Holds the ingredient images by their content hash, so they can be served
+ * under an immutable url instead of being embedded into every response.
+ * Every owner, like the pizza catalog, replaces all of its images at once when it is reloaded.
+ * Clients that are still in a round may fetch the urls of the replaced images later on, so the replaced images
+ * are served for "imageStore.gracePeriod" (60 seconds by default, one catalog refresh) before they are dropped.
+ */
+@Singleton
+public class ImageStore {
+
+    private static final Duration DEFAULT_GRACE_PERIOD = Duration.ofSeconds(60);
+
+    private final long gracePeriodNanos;
+    private final Map<String, Generations> imagesByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new Image store with the grace period from the configuration.
+     *
+     * @param config the config
+     */
+    @Inject
+    public ImageStore(Config config) {
+        this(config.hasPath("imageStore.gracePeriod") ? config.getDuration("imageStore.gracePeriod") : DEFAULT_GRACE_PERIOD);
+    }
+
+    /**
+     * Instantiates a new Image store.
+     *
+     * @param gracePeriod how long replaced images are still served
+     */
+    public ImageStore(Duration gracePeriod) {
+        this.gracePeriodNanos = gracePeriod.toNanos();
+    }
+
+    /**
+     * Replaces all images of an owner, the replaced ones are kept for the grace period.
+     *
+     * @param owner  the name of the owner
+     * @param images the image bytes
+     */
+    public void replace(String owner, Collection<byte[]> images) {
+        Map<String, byte[]> byHash = new HashMap<>();
+        for (byte[] bytes : images) {
+            byHash.putIfAbsent(StoredImages.hash(bytes), bytes);
+        }
+        imagesByOwner.compute(owner, (name, generations) -> new Generations(Collections.unmodifiableMap(byHash), generations, gracePeriodNanos));
+    }
+
+    /**
+     * Gets an image by its hash.
+     *
+     * @param hash the hash
+     * @return the image bytes or null if there is no image with this hash
+     */
+    public byte[] get(String hash) {
+        for (Generations generations : imagesByOwner.values()) {
+            byte[] bytes = generations.get(hash);
+            if (bytes != null) return bytes;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of distinct images of all owners, replaced ones included until their grace period is over.
+     *
+     * @return the number of images
+     */
+    public int size() {
+        return (int) imagesByOwner.values().stream().flatMap(Generations::hashes).distinct().count();
+    }
+
+    /**
+     * Gets the hash under which an image is stored.
+     *
+     * @param bytes the image bytes
+     * @return the hash
+     */
+    public static String getHash(byte[] bytes) {
+        return StoredImages.hash(bytes);
+    }
+
+    /**
+     * Gets the content type of an image.
+     *
+     * @param bytes the image bytes
+     * @return the content type
+     */
+    public static String getContentType(byte[] bytes) {
+        return "image/" + StoredImages.getType(bytes);
+    }
+
+    /**
+     * The current images of an owner and the replaced ones that are still in their grace period.
+     */
+    private static class Generations {
+        private final Map<String, byte[]> current;
+        private final List<Retired> retired;
+
+        Generations(Map<String, byte[]> current, Generations previous, long gracePeriodNanos) {
+            this.current = current;
+            this.retired = new ArrayList<>();
+            if (previous != null) {
+                long now = System.nanoTime();
+                for (Retired old : previous.retired) {
+                    if (old.expires - now > 0) retired.add(old);
+                }
+                retired.add(new Retired(previous.current, now + gracePeriodNanos));
+            }
+        }
+
+        byte[] get(String hash) {
+            byte[] bytes = current.get(hash);
+            if (bytes != null) return bytes;
+            long now = System.nanoTime();
+            for (Retired old : retired) {
+                if (old.expires - now > 0 && old.images.containsKey(hash)) return old.images.get(hash);
+            }
+            return null;
+        }
+
+        Stream<String> hashes() {
+            long now = System.nanoTime();
+            return Stream.concat(current.keySet().stream(), retired.stream()
+                    .filter(old -> old.expires - now > 0)
+                    .flatMap(old -> old.images.keySet().stream()));
+        }
+    }
+
+    private static class Retired {
+        private final Map<String, byte[]> images;
+        private final long expires;
+
+        Retired(Map<String, byte[]> images, long expires) {
+            this.images = images;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package models.factory;
+
+import play.db.Database;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory highscore leaderboard.
+ * It is loaded once from the database and then kept up to date by {@link UserFactory.User#save()},
+ * so reading the top entries, a rank or a page never touches the database.
+ * Entries are ordered by highscore descending; equal highscores are ordered by user id.
+ * Lookups share a read lock, updates take the write lock.
+ */
+@Singleton
+public class Leaderboard {
+
+    static final Comparator<Entry> ORDER = Comparator
+            .comparingInt(Entry::getHighScore).reversed()
+            .thenComparingInt(Entry::getUserId);
+
+    private final Database db;
+
+    private final OrderStatisticTree<Entry> entries = new OrderStatisticTree<>(ORDER);
+    private final Map<Integer, Entry> entriesByUserId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    /**
+     * Instantiates a new Leaderboard.
+     *
+     * @param db the db
+     */
+    @Inject
+    public Leaderboard(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Gets the best entries with a highscore above 0.
+     *
+     * @param count the maximum number of entries
+     * @return the entries, best first
+     */
+    public List<Entry> getTop(int count) {
+        load();
+        lock.readLock().lock();
+        try {
+            List<Entry> top = entries.range(0, count);
+            int end = top.size();
+            while (end > 0 && top.get(end - 1).getHighScore() <= 0) end--;
+            return top.subList(0, end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the position of a user.
+     *
+     * @param userId the user id
+     * @return the position or null if the user isn't on the leaderboard
+     */
+    public Position getPosition(int userId) {
+        load();
+        lock.readLock().lock();
+        try {
+            Entry entry = entriesByUserId.get(userId);
+            if (entry == null) return null;
+            return new Position(entries.indexOf(entry) + 1, entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a page of the leaderboard.
+     *
+     * @param page     the 1-based page number
+     * @param pageSize the number of entries per page
+     * @return the positions on the page, empty if the page is behind the last one
+     */
+    public List<Position> getPage(int page, int pageSize) {
+        load();
+        lock.readLock().lock();
+        try {
+            int from = (page - 1) * pageSize;
+            List<Position> positions = new ArrayList<>(pageSize);
+            for (Entry entry : entries.range(from, pageSize)) {
+                positions.add(new Position(from + positions.size() + 1, entry));
+            }
+            return positions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the leaderboard of a group of users, e.g. a user and its friends.
+     *
+     * @param userIds the ids of the users
+     * @return the positions of the users that are on the leaderboard, ranked within the group
+     */
+    public List<Position> getPositions(int... userIds) {
+        load();
+        List<Entry> group = new ArrayList<>(userIds.length);
+        lock.readLock().lock();
+        try {
+            for (int userId : userIds) {
+                Entry entry = entriesByUserId.get(userId);
+                if (entry != null) group.add(entry);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        group.sort(ORDER);
+        List<Position> positions = new ArrayList<>(group.size());
+        for (Entry entry : group) {
+            positions.add(new Position(positions.size() + 1, entry));
+        }
+        return positions;
+    }
+
+    /**
+     * Gets the number of users on the leaderboard.
+     *
+     * @return the size
+     */
+    public int getSize() {
+        load();
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a user or updates its username and highscore.
+     * Does nothing if the leaderboard hasn't been loaded yet, the load will see the saved user.
+     *
+     * @param userId    the user id
+     * @param username  the username
+     * @param highScore the highscore
+     */
+    public void update(int userId, String username, int highScore) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            Entry old = entriesByUserId.get(userId);
+            if (old != null) {
+                if (old.getHighScore() == highScore && Objects.equals(old.getUsername(), username)) return;
+                entries.remove(old);
+            }
+            add(new Entry(userId, username, highScore));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a user.
+     *
+     * @param userId the user id
+     */
+    public void remove(int userId) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entriesByUserId.remove(userId);
+            if (old != null) entries.remove(old);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            db.withConnection(conn -> {
+                PreparedStatement stmt = conn.prepareStatement("SELECT idUser, username, highscore FROM User ORDER BY highscore DESC");
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    add(new Entry(rs.getInt("idUser"), rs.getString("username"), rs.getInt("highscore")));
+                }
+                stmt.close();
+            });
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        entriesByUserId.put(entry.getUserId(), entry);
+    }
+
+    /**
+     * A user's highscore on the leaderboard.
+     */
+    public static class Entry {
+        private final int userId;
+        private final String username;
+        private final int highScore;
+
+        public Entry(int userId, String username, int highScore) {
+            this.userId = userId;
+            this.username = username;
+            this.highScore = highScore;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getHighScore() {
+            return highScore;
+        }
+    }
+
+    /**
+     * An entry together with its 1-based rank.
+     */
+    public static class Position {
+        private final int rank;
+        private final Entry entry;
+
+        public Position(int rank, Entry entry) {
+            this.rank = rank;
+            this.entry = entry;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public int getUserId() {
+            return entry.getUserId();
+        }
+
+        public String getUsername() {
+            return entry.getUsername();
+        }
+
+        public int getHighScore() {
+            return entry.getHighScore();
+        }
+    }
+}
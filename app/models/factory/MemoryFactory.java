@@ -1,90 +1,141 @@
 package models.factory;
 
-import models.factory.factoryExceptions.ProfilePictureException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import play.db.Database;
 
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Singleton
 public class MemoryFactory {
 
+    private static final String IMAGE_OWNER = "memory";
+
     private final Database db;
+    private final ImageStore imageStore;
+
+    private final AtomicReference<Decks> decks = new AtomicReference<>();
 
     @Inject
-    public MemoryFactory(Database db) {
+    public MemoryFactory(Database db, ImageStore imageStore) {
         this.db = db;
+        this.imageStore = imageStore;
     }
 
-    public static String encodeImageToString(BufferedImage image, String type) {
-        String imageString = null;
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-        try {
-            ImageIO.write(image, type, bos);
-            byte[] imageBytes = bos.toByteArray();
-
-            imageString = "data:image/" + type + ";base64," + Base64.getEncoder().encodeToString(imageBytes);
-
-            bos.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Gets the Memory decks; loads them from the database if they haven't been loaded yet.
+     *
+     * @return the decks
+     */
+    public Decks getDecks() {
+        Decks current = decks.get();
+        if (current == null) {
+            synchronized (decks) {
+                current = decks.get();
+                if (current == null) {
+                    current = reloadDecks();
+                }
+            }
         }
-        return imageString;
+        return current;
     }
 
-    public List<MemoryIngredient> getMemoryIngredients(String email) {
-
-        return db.withConnection(conn -> {
+    /**
+     * Loads all Memory ingredients and atomically replaces the current decks.
+     * Their images replace the ones of the old decks in the {@link ImageStore}.
+     *
+     * @return the new decks
+     */
+    public Decks reloadDecks() {
+        List<MemoryIngredient> ingredients = db.withConnection(conn -> {
             List<MemoryIngredient> result = new ArrayList<>();
-            String sql = "SELECT idIngredient, name, description, picture_raw FROM Ingredient JOIN Memory M on Ingredient.idIngredient = M.Ingredient_fk WHERE Tier_idTier <= (SELECT Tier_idTier FROM `User` WHERE email = ?)";
+            String sql = "SELECT idIngredient, name, description, picture_raw, Tier_idTier FROM Ingredient JOIN Memory M on Ingredient.idIngredient = M.Ingredient_fk";
             PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                result.add(new MemoryIngredient(rs));
+                MemoryIngredient ingredient = new MemoryIngredient(rs);
+                ingredient.tier = rs.getInt("Tier_idTier");
+                result.add(ingredient);
             }
             stmt.close();
             return result;
         });
+        List<byte[]> pictures = new ArrayList<>();
+        for (MemoryIngredient ingredient : ingredients) {
+            pictures.add(ingredient.getPicture_data());
+        }
+        imageStore.replace(IMAGE_OWNER, pictures);
+        Decks fresh = new Decks(ingredients);
+        decks.set(fresh);
+        return fresh;
     }
 
-    public List<MemoryIngredient> getMemoryIngredientsForNextTier(String email) {
-
-        return db.withConnection(conn -> {
-            List<MemoryIngredient> result = new ArrayList<>();
-            String sql = "SELECT idIngredient, name, description, picture_raw FROM Ingredient JOIN Memory M on Ingredient.idIngredient = M.Ingredient_fk WHERE Tier_idTier <= (SELECT Tier_idTier FROM `User` WHERE email = ?) + 1";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, email);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                result.add(new MemoryIngredient(rs));
-            }
-            stmt.close();
-            return result;
-        });
+    /**
+     * Gets the serialized Memory deck of a tier.
+     *
+     * @param tier the tier
+     * @return the serialized deck
+     */
+    public SerializedResponse getDeckJson(int tier) {
+        return getDecks().getDeckJson(tier);
     }
 
     // --------------------------------------------------------------------------------------
 
+    /**
+     * Immutable Memory decks of every tier, kept serialized.
+     * A deck contains every Memory ingredient up to its tier, so the deck for a level-up is the one of the next tier.
+     */
+    public static class Decks {
+        private static final SerializedResponse EMPTY = SerializedResponse.of(Collections.emptyList());
+
+        private final TreeMap<Integer, List<MemoryIngredient>> decksByTier = new TreeMap<>();
+        private final TreeMap<Integer, SerializedResponse> decksJsonByTier = new TreeMap<>();
+
+        public Decks(List<MemoryIngredient> ingredients) {
+            for (MemoryIngredient ingredient : ingredients) {
+                decksByTier.put(ingredient.getTier(), null);
+            }
+            for (Map.Entry<Integer, List<MemoryIngredient>> entry : decksByTier.entrySet()) {
+                List<MemoryIngredient> deck = new ArrayList<>();
+                for (MemoryIngredient ingredient : ingredients) {
+                    if (ingredient.getTier() <= entry.getKey()) deck.add(ingredient);
+                }
+                entry.setValue(Collections.unmodifiableList(deck));
+                decksJsonByTier.put(entry.getKey(), SerializedResponse.of(deck));
+            }
+        }
+
+        public List<MemoryIngredient> getDeck(int tier) {
+            Map.Entry<Integer, List<MemoryIngredient>> entry = decksByTier.floorEntry(tier);
+            return entry == null ? Collections.emptyList() : entry.getValue();
+        }
+
+        public SerializedResponse getDeckJson(int tier) {
+            Map.Entry<Integer, SerializedResponse> entry = decksJsonByTier.floorEntry(tier);
+            return entry == null ? EMPTY : entry.getValue();
+        }
+    }
+
     public static class MemoryIngredient {
 
         int id;
         String name;
         String description;
 
+        // url of the picture in the ImageStore
         String picture;
+        byte[] picture_data;
+        int tier;
 
         public MemoryIngredient(int id, String name, String description, String picture) {
             this.id = id;
@@ -99,12 +150,8 @@ public class MemoryFactory {
             this.name = rs.getString("name");
             this.description = rs.getString("description");
 
-            BufferedInputStream bis = new BufferedInputStream(rs.getBinaryStream("picture_raw"));
-            try {
-                this.picture = encodeImageToString(ImageIO.read(bis), "png");
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting \"picture_raw\"");
-            }
+            this.picture_data = StoredImages.read(rs, "picture_raw");
+            this.picture = StoredImages.getUrl(picture_data);
 
         }
 
@@ -124,6 +171,16 @@ public class MemoryFactory {
         public String getPicture() {
             return picture;
         }
+
+        @JsonIgnore
+        public byte[] getPicture_data() {
+            return picture_data;
+        }
+
+        @JsonIgnore
+        public int getTier() {
+            return tier;
+        }
     }
 
     /**
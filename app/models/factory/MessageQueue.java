@@ -0,0 +1,327 @@
+package models.factory;
+
+import com.typesafe.config.Config;
+import models.Message;
+import play.db.Database;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Batching queue for chat messages.
+ * Sending a message puts it into a bounded in-process queue, a dedicated thread writes the queue to the
+ * Message table in multi-row inserts of at most "messageQueue.flushSize" messages (200 by default), waiting at most
+ * "messageQueue.flushInterval" (20 milliseconds by default) for a batch to fill up.
+ * When all "messageQueue.capacity" places (10000 by default) are taken, senders are turned away right away.
+ * Written messages are handed to {@link RecentMessages}.
+ *
+ * By default a sender waits until the insert with its message is committed, so an accepted message is in the db,
+ * and concurrent senders still share one insert. With "messageQueue.acknowledgeQueued" set to true a sender only
+ * waits until its message is queued; that is faster, but messages still queued when the process dies are lost.
+ * The queue is written out before the application stops.
+ *
+ * A batch that can't be written is retried and then written one message at a time, so one bad message doesn't
+ * take the others with it. Messages that can't be written at all are logged and counted, see {@link #getLost()}.
+ */
+@Singleton
+public class MessageQueue {
+
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final int DEFAULT_FLUSH_SIZE = 200;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(20);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger("application");
+
+    private final Database db;
+    private final RecentMessages recentMessages;
+    private final BlockingQueue<Pending> queue;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final boolean acknowledgeQueued;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "message-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean started = new AtomicBoolean();
+    // senders hold the read lock from checking stopping until their message is queued, stop takes the write lock
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    private volatile boolean stopping;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private long handled;
+
+    /**
+     * Instantiates a new Message queue with the settings from the configuration, that is drained when the application stops.
+     *
+     * @param db             the db
+     * @param recentMessages the recent messages
+     * @param config         the config
+     * @param appLifecycle   the app lifecycle
+     */
+    @Inject
+    public MessageQueue(Database db, RecentMessages recentMessages, Config config, ApplicationLifecycle appLifecycle) {
+        this(db, recentMessages,
+                config.hasPath("messageQueue.capacity") ? config.getInt("messageQueue.capacity") : DEFAULT_CAPACITY,
+                config.hasPath("messageQueue.flushSize") ? config.getInt("messageQueue.flushSize") : DEFAULT_FLUSH_SIZE,
+                config.hasPath("messageQueue.flushInterval") ? config.getDuration("messageQueue.flushInterval") : DEFAULT_FLUSH_INTERVAL,
+                config.hasPath("messageQueue.acknowledgeQueued") && config.getBoolean("messageQueue.acknowledgeQueued"));
+        appLifecycle.addStopHook(() -> CompletableFuture.runAsync(this::stop));
+    }
+
+    /**
+     * Instantiates a new Message queue.
+     *
+     * @param db             the db
+     * @param recentMessages the recent messages
+     * @param capacity       the maximum number of queued messages
+     * @param flushSize      the maximum number of messages per insert
+     * @param flushInterval     how long a batch waits for more messages
+     * @param acknowledgeQueued whether senders only wait until their message is queued instead of written
+     */
+    public MessageQueue(Database db, RecentMessages recentMessages, int capacity, int flushSize, Duration flushInterval, boolean acknowledgeQueued) {
+        this.db = db;
+        this.recentMessages = recentMessages;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.acknowledgeQueued = acknowledgeQueued;
+    }
+
+    /**
+     * Queues a message to be written to the db and waits until it is written, or only until it is queued
+     * if "messageQueue.acknowledgeQueued" is set.
+     *
+     * @param message the message
+     * @return true if the message was written (or queued), false if the queue is full or stopping or the message couldn't be written
+     */
+    public boolean enqueue(Message message) {
+        Pending pending = new Pending(message);
+        stopLock.readLock().lock();
+        try {
+            // checked under the lock, so the writer can't finish between the check and the offer
+            if (stopping) return false;
+            if (started.compareAndSet(false, true)) {
+                writer.execute(this::writeLoop);
+            }
+            if (!queue.offer(pending)) return false;
+            enqueued.incrementAndGet();
+        } finally {
+            stopLock.readLock().unlock();
+        }
+        // the writer completes every queued message, written or not, so this doesn't wait forever
+        return acknowledgeQueued || pending.written.join();
+    }
+
+    /**
+     * Waits until every message queued before this call is written or given up.
+     *
+     * @param timeout the maximum time to wait
+     * @return true if they were handled in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        long target = enqueued.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (this) {
+            while (handled < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of messages that couldn't be written and were dropped.
+     *
+     * @return the number of messages
+     */
+    public long getLost() {
+        return lost.get();
+    }
+
+    /**
+     * Gets the number of messages waiting to be written.
+     *
+     * @return the number of messages
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Turns away new messages, writes the queued ones and stops the writer thread.
+     */
+    public void stop() {
+        stopLock.writeLock().lock();
+        try {
+            stopping = true;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                // give up on what the writer didn't get to, so no sender keeps waiting
+                List<Pending> left = new ArrayList<>();
+                queue.drainTo(left);
+                lost.addAndGet(left.size());
+                for (Pending pending : left) {
+                    pending.written.complete(false);
+                }
+                logger.error("MessageQueue: Stopped with " + left.size() + " messages not written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(flushSize);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // give the batch the flush interval to fill up, so a burst becomes a few big inserts
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    if (batch.size() >= flushSize) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // the writer is stopped with shutdown, not by interrupting it, so write what there is and carry on
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+        }
+        List<Message> inserted = insertWithRetries(messages);
+        if (inserted != null) {
+            recentMessages.append(inserted);
+            for (Pending pending : batch) {
+                pending.written.complete(true);
+            }
+        } else {
+            // one bad message fails the whole insert, so the messages are written one at a time to keep the others
+            List<Message> written = new ArrayList<>();
+            List<Pending> failed = new ArrayList<>();
+            for (Pending pending : batch) {
+                try {
+                    written.addAll(insert(Collections.singletonList(pending.message)));
+                } catch (RuntimeException e) {
+                    failed.add(pending);
+                    logger.error("MessageQueue: Could not write the message from " + pending.message.getSender()
+                            + " to " + pending.message.getReceiver() + " at " + pending.message.getTime(), e);
+                }
+            }
+            lost.addAndGet(failed.size());
+            recentMessages.append(written);
+            for (Pending pending : batch) {
+                pending.written.complete(!failed.contains(pending));
+            }
+        }
+        synchronized (this) {
+            handled += batch.size();
+            notifyAll();
+        }
+    }
+
+    private List<Message> insertWithRetries(List<Message> messages) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                return insert(messages);
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    logger.warn("MessageQueue: Could not write " + messages.size() + " messages at once, writing them one by one", e);
+                } else {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(flushIntervalNanos * attempt);
+                    } catch (InterruptedException interrupted) {
+                        // retry right away
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserts messages and returns them with the ids the db gave them.
+     */
+    private List<Message> insert(List<Message> batch) {
+        return db.withConnection(conn -> {
+            String sql = "INSERT INTO `Message` (sender, receiver, time, message_text) VALUES "
+                    + String.join(", ", Collections.nCopies(batch.size(), "(?, ?, ?, ?)"));
+            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            int index = 1;
+            for (Message message : batch) {
+                stmt.setInt(index++, message.getSender());
+                stmt.setInt(index++, message.getReceiver());
+                stmt.setTimestamp(index++, Timestamp.valueOf(message.getTime()));
+                stmt.setString(index++, message.getMessage_text());
+            }
+            stmt.executeUpdate();
+            // the keys come in the order of the rows
+            List<Message> inserted = new ArrayList<>(batch.size());
+            ResultSet keys = stmt.getGeneratedKeys();
+            for (Message message : batch) {
+                if (!keys.next()) throw new SQLException("Missing generated id of a message");
+                inserted.add(new Message(keys.getInt(1), message.getSender(), message.getReceiver(), message.getTime(), message.getMessage_text()));
+            }
+            stmt.close();
+            return inserted;
+        });
+    }
+
+    /**
+     * A queued message and whether it was written, once the writer is done with it.
+     */
+    private static class Pending {
+        final Message message;
+        final CompletableFuture<Boolean> written = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package models.factory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Sorted set that also answers "at which position is this value" and "which value is at this position".
+ * It is a treap whose nodes know the size of their subtree, so add, remove, indexOf and get take O(log n)
+ * expected time and a range of k values takes O(log n + k). Not thread-safe.
+ *
+ * @param <T> the type of the values, ordered by the comparator
+ */
+final class OrderStatisticTree<T> {
+
+    private final Comparator<? super T> comparator;
+    private final SplittableRandom random = new SplittableRandom(0);
+    private Node<T> root;
+
+    OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Adds a value unless an equal one is already present.
+     *
+     * @param value the value
+     * @return true if the value was added
+     */
+    boolean add(T value) {
+        if (indexOf(value) >= 0) return false;
+        Node<T>[] parts = split(root, value);
+        root = merge(merge(parts[0], new Node<>(value, random.nextInt())), parts[1]);
+        return true;
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value the value
+     * @return true if the value was present
+     */
+    boolean remove(T value) {
+        if (indexOf(value) < 0) return false;
+        root = remove(root, value);
+        return true;
+    }
+
+    /**
+     * Gets the position of a value.
+     *
+     * @param value the value
+     * @return the 0-based position or -1 if the value isn't present
+     */
+    int indexOf(T value) {
+        int index = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the value at a position.
+     *
+     * @param index the 0-based position
+     * @return the value
+     * @throws IndexOutOfBoundsException if there is no value at the position
+     */
+    T get(int index) {
+        List<T> values = range(index, 1);
+        if (values.isEmpty()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        return values.get(0);
+    }
+
+    /**
+     * Gets the values from a position on.
+     *
+     * @param from  the 0-based position of the first value
+     * @param count the maximum number of values
+     * @return the values in order, fewer than count at the end of the tree
+     */
+    List<T> range(int from, int count) {
+        List<T> values = new ArrayList<>(Math.max(0, Math.min(count, size() - from)));
+        if (from < 0 || count <= 0) return values;
+
+        // walk down to the first value, remembering the nodes that still follow it
+        Deque<Node<T>> following = new ArrayDeque<>();
+        Node<T> node = root;
+        int index = from;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                following.push(node);
+                node = node.left;
+            } else if (index == leftSize) {
+                following.push(node);
+                break;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        while (!following.isEmpty() && values.size() < count) {
+            node = following.pop();
+            values.add(node.value);
+            for (Node<T> next = node.right; next != null; next = next.left) following.push(next);
+        }
+        return values;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    /**
+     * Splits a subtree into the values before the given one and the values from it on.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<T>[] split(Node<T> node, T value) {
+        if (node == null) return new Node[]{null, null};
+        if (comparator.compare(node.value, value) < 0) {
+            Node<T>[] parts = split(node.right, value);
+            node.right = parts[0];
+            parts[0] = node.update();
+            return parts;
+        }
+        Node<T>[] parts = split(node.left, value);
+        node.left = parts[1];
+        parts[1] = node.update();
+        return parts;
+    }
+
+    /**
+     * Merges two subtrees where every value of the first one is before every value of the second one.
+     */
+    private Node<T> merge(Node<T> first, Node<T> second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            return first.update();
+        }
+        second.left = merge(first, second.left);
+        return second.update();
+    }
+
+    private Node<T> remove(Node<T> node, T value) {
+        int cmp = comparator.compare(value, node.value);
+        if (cmp == 0) return merge(node.left, node.right);
+        if (cmp < 0) {
+            node.left = remove(node.left, value);
+        } else {
+            node.right = remove(node.right, value);
+        }
+        return node.update();
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node<T> {
+        final T value;
+        final int priority;
+        int size = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        Node<T> update() {
+            size = size(left) + size(right) + 1;
+            return this;
+        }
+    }
+}
@@ -1,83 +1,156 @@
 package models.factory;
 
-import models.factory.factoryExceptions.ProfilePictureException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import play.db.Database;
 
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The type Pizza rush factory.
  */
 @Singleton
 public class PizzaRushFactory {
+    private static final String CHOPPING_INGREDIENTS_SQL = "SELECT * FROM `Ingredient` JOIN `FlightBehavior` FB on Ingredient.idIngredient = FB.Ingredient_fk";
+    private static final String STAMPING_INGREDIENTS_SQL = "SELECT * FROM `Ingredient` JOIN `StampBehavior` SB on Ingredient.idIngredient = SB.Ingredient_fk";
+
+    private static final String IMAGE_OWNER = "catalog";
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger("application");
+
     final Database db;
+    private final ImageStore imageStore;
+
+    private final AtomicReference<Catalog> catalog = new AtomicReference<>();
 
     /**
      * Instantiates a new Pizza rush factory.
      *
-     * @param db the db
+     * @param db         the db
+     * @param imageStore the image store
      */
     @Inject
-    public PizzaRushFactory(Database db) {
+    public PizzaRushFactory(Database db, ImageStore imageStore) {
         this.db = db;
+        this.imageStore = imageStore;
     }
 
     /**
-     * Encode image to string string.
+     * Gets the current catalog snapshot; loads it from the database if it hasn't been loaded yet.
      *
-     * @param image the image
-     * @param type  the type
-     * @return the string
+     * @return the catalog
      */
-    public static String encodeImageToString(BufferedImage image, String type) {
-        String imageString = null;
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    public Catalog getCatalog() {
+        Catalog current = catalog.get();
+        if (current == null) {
+            synchronized (catalog) {
+                current = catalog.get();
+                if (current == null) {
+                    current = reloadCatalog();
+                }
+            }
+        }
+        return current;
+    }
 
-        try {
-            ImageIO.write(image, type, bos);
-            byte[] imageBytes = bos.toByteArray();
+    /**
+     * Loads all ingredients and pizzas from the database and atomically replaces the current catalog.
+     * The images of the ingredients replace the ones of the old catalog in the {@link ImageStore} before the catalog is visible.
+     *
+     * @return the new catalog
+     */
+    public Catalog reloadCatalog() {
+        synchronized (catalog) {
+            // the revision is read first, so changes made while loading are detected by the next refresh
+            Long revision = getCatalogRevision();
+            List<Ingredient> ingredients = loadIngredients();
+            List<byte[]> pictures = new ArrayList<>();
+            for (Ingredient ingredient : ingredients) {
+                pictures.addAll(ingredient.getPictureData());
+            }
+            imageStore.replace(IMAGE_OWNER, pictures);
+            Catalog current = catalog.get();
+            long version = current == null ? 1 : current.getVersion() + 1;
+            Catalog fresh = new Catalog(version, revision, ingredients, loadPizzas(ingredients));
+            catalog.set(fresh);
+            return fresh;
+        }
+    }
 
-            imageString = "data:image/" + type + ";base64," + Base64.getEncoder().encodeToString(imageBytes);
+    /**
+     * Reloads the catalog if the catalog tables changed since it was loaded.
+     * If the revision of the catalog tables can't be read the current catalog is kept.
+     *
+     * @return true if the catalog was reloaded
+     */
+    public boolean refreshCatalog() {
+        Catalog current = catalog.get();
+        if (current != null) {
+            Long revision = getCatalogRevision();
+            if (revision == null) {
+                logger.warn("PizzaRushFactory: Could not read the catalog revision, keeping catalog version " + current.getVersion());
+                return false;
+            }
+            if (revision.equals(current.getRevision())) {
+                return false;
+            }
+        }
+        reloadCatalog();
+        return true;
+    }
 
-            bos.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Gets the revision of the catalog tables, the triggers from conf/sql/catalog_revision.sql count it up with every change.
+     *
+     * @return the revision or null if it can't be read
+     */
+    public Long getCatalogRevision() {
+        try {
+            return db.withConnection(conn -> {
+                PreparedStatement stmt = conn.prepareStatement("SELECT revision FROM `CatalogRevision`");
+                ResultSet rs = stmt.executeQuery();
+                Long revision = rs.next() ? rs.getLong("revision") : null;
+                stmt.close();
+                return revision;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("PizzaRushFactory: Could not read the catalog revision", e);
+            return null;
         }
-        return imageString;
     }
 
     /**
-     * Gets ingredient by id.
+     * Gets the available ingredients for a tier from the catalog.
      *
-     * @param id the id
-     * @return the ingredient
+     * @param tier the tier of the user
+     * @return the ingredient-List
      */
-    // WARNING: Returns non-specified Ingredients (Ingredient.class)
-    public Ingredient getIngredientById(int id) {
-        return db.withConnection(conn -> {
-            Ingredient ingredient = null;
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM `Ingredient` WHERE idIngredient = ?");
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                ingredient = new Ingredient(rs);
-            }
-            stmt.close();
-            return ingredient;
-        });
+    public List<Ingredient> getIngredientsForTier(int tier) {
+        return getCatalog().getIngredients(tier);
+    }
+
+    /**
+     * Gets the available pizzas for a tier from the catalog.
+     *
+     * @param tier the tier of the user
+     * @return the order list
+     */
+    public List<Order> getPizzasForTier(int tier) {
+        return getCatalog().getPizzas(tier);
     }
 
     /**
@@ -98,53 +171,42 @@ public class PizzaRushFactory {
     }
 
     /**
-     * Gets ingredients for specific user.
-     *
-     * @param email the email of the user
-     * @return the ingredient-List
-     */
-    // Gets available ingredients for specific User
-    public List<Ingredient> getIngredients(String email) {
-        List<Ingredient> result = new ArrayList<>();
-        result.addAll(getChoppingIngredients(email));
-        result.addAll(getStampingIngredients(email));
-
-        result.sort(Comparator.comparing(Ingredient::getId));
-        return result;
-    }
-
-    /**
-     * Gets all Chopping-ingredients.
+     * Loads all Chopping- and Stamping-ingredients with a single connection.
+     * The behaviors are read from the joined rows, so no further queries are needed.
      *
      * @return the ingredient-List
      */
-    public List<Ingredient> getChoppingIngredients() {
+    public List<Ingredient> loadIngredients() {
         return db.withConnection(conn -> {
             List<Ingredient> result = new ArrayList<>();
-            String sql = "SELECT * FROM `Ingredient` JOIN `FlightBehavior` FB on Ingredient.idIngredient = FB.Ingredient_fk";
-            PreparedStatement stmt = conn.prepareStatement(sql);
+            PreparedStatement stmt = conn.prepareStatement(CHOPPING_INGREDIENTS_SQL);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                Ingredient ingredient = new ChoppingIngredient(rs);
-                result.add(ingredient);
+                result.add(new ChoppingIngredient(rs));
             }
             stmt.close();
+
+            stmt = conn.prepareStatement(STAMPING_INGREDIENTS_SQL);
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                result.add(new StampingIngredient(rs));
+            }
+            stmt.close();
+
+            result.sort(Comparator.comparing(Ingredient::getId));
             return result;
         });
     }
 
     /**
-     * Gets Chopping-ingredients for specific user.
+     * Gets all Chopping-ingredients.
      *
      * @return the ingredient-List
      */
-    private List<Ingredient> getChoppingIngredients(String email) {
+    public List<Ingredient> getChoppingIngredients() {
         return db.withConnection(conn -> {
             List<Ingredient> result = new ArrayList<>();
-            //String sql = "SELECT * FROM `Ingredient` JOIN `FlightBehavior` ON `Ingredient`.idIngredient = `FlightBehavior`.Ingredient_fk JOIN `User` ON `Ingredient`.Tier_idTier <= `User`.Tier_idTier WHERE `User`.email = ?";
-            String sql = "SELECT * FROM `Ingredient` JOIN `FlightBehavior` FB on Ingredient.idIngredient = FB.Ingredient_fk WHERE Tier_idTier <= (SELECT Tier_idTier FROM `User` WHERE email = ?)";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, email);
+            PreparedStatement stmt = conn.prepareStatement(CHOPPING_INGREDIENTS_SQL);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 Ingredient ingredient = new ChoppingIngredient(rs);
@@ -163,8 +225,7 @@ public class PizzaRushFactory {
     public List<Ingredient> getStampingIngredients() {
         return db.withConnection(conn -> {
             List<Ingredient> result = new ArrayList<>();
-            String sql = "SELECT * FROM `Ingredient` JOIN `StampBehavior` SB on Ingredient.idIngredient = SB.Ingredient_fk";
-            PreparedStatement stmt = conn.prepareStatement(sql);
+            PreparedStatement stmt = conn.prepareStatement(STAMPING_INGREDIENTS_SQL);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 Ingredient ingredient = new StampingIngredient(rs);
@@ -176,74 +237,192 @@ public class PizzaRushFactory {
     }
 
     /**
-     * Gets Stamping-ingredients for specific user.
+     * Loads all pizzas with a single connection. The recipes of all pizzas are read in one query
+     * and resolved against the given, already built ingredients.
      *
-     * @return the ingredient-List
+     * @param ingredients the ingredients the recipes are made of
+     * @return Order-list
      */
-    // Gets available StampingIngredients for specific User
-    private List<Ingredient> getStampingIngredients(String email) {
+    public List<Order> loadPizzas(List<Ingredient> ingredients) {
+        Map<Integer, Ingredient> ingredientsById = new HashMap<>();
+        for (Ingredient ingredient : ingredients) {
+            ingredientsById.put(ingredient.getId(), ingredient);
+        }
+
         return db.withConnection(conn -> {
-            List<Ingredient> result = new ArrayList<>();
-            //String sql = "SELECT * FROM `Ingredient` JOIN `StampBehavior` ON `Ingredient`.idIngredient = `StampBehavior`.Ingredient_fk JOIN `User` ON `Ingredient`.Tier_idTier <= `User`.Tier_idTier WHERE `User`.email = ?";
-            String sql = "SELECT * FROM `Ingredient` JOIN `StampBehavior` SB on Ingredient.idIngredient = SB.Ingredient_fk WHERE Tier_idTier <= (SELECT Tier_idTier FROM `User` WHERE email = ?)";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, email);
+            Map<Integer, List<Ingredient>> recipes = new HashMap<>();
+            Set<Integer> incompletePizzas = new HashSet<>();
+            PreparedStatement stmt = conn.prepareStatement("SELECT Pizza_idPizza, Ingredient_idIngredient FROM `Pizza_has_Ingredient`");
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                Ingredient ingredient = new StampingIngredient(rs);
-                result.add(ingredient);
+                int pizzaId = rs.getInt("Pizza_idPizza");
+                int ingredientId = rs.getInt("Ingredient_idIngredient");
+                Ingredient ingredient = ingredientsById.get(ingredientId);
+                if (ingredient == null) {
+                    // without all of its ingredients the required tier of the pizza would come out too low
+                    logger.warn("PizzaRushFactory: Pizza " + pizzaId + " needs ingredient " + ingredientId + ", which isn't in the catalog, skipping the pizza");
+                    incompletePizzas.add(pizzaId);
+                } else {
+                    recipes.computeIfAbsent(pizzaId, id -> new ArrayList<>()).add(ingredient);
+                }
             }
             stmt.close();
-            return result;
-        });
-    }
 
-    /**
-     * Gets all pizzas.
-     *
-     * @return Order-list
-     */
-    // Gets ALL Pizzas
-    public List<Order> getPizzas() {
-        return db.withConnection(conn -> {
             List<Order> result = new ArrayList<>();
-            String sql = "SELECT * FROM Pizza";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            ResultSet rs = stmt.executeQuery();
+            stmt = conn.prepareStatement("SELECT * FROM Pizza");
+            rs = stmt.executeQuery();
             while (rs.next()) {
-                Order order = new Order(rs);
-                result.add(order);
+                if (incompletePizzas.contains(rs.getInt("idPizza"))) continue;
+                List<Ingredient> recipe = recipes.getOrDefault(rs.getInt("idPizza"), new ArrayList<>());
+                result.add(new Order(rs, recipe));
             }
             stmt.close();
             return result;
         });
     }
 
+    // CLASSES --------------------------------------------------------------------------------------------------------
+
     /**
-     * Gets pizzas for specific user.
-     *
-     * @param email the email
-     * @return the order list
+     * Immutable snapshot of all ingredients and pizzas, indexed by tier.
+     * An ingredient is available from its own tier on, a pizza from the highest tier of its ingredients on.
+     * The lists of every tier are also kept serialized, so they can be sent without serializing them again.
      */
-    // Gets available Pizzas for specific User
-    public List<Order> getPizzas(String email) {
-        return db.withConnection(conn -> {
-            List<Order> result = new ArrayList<>();
-            String sql = "SELECT * FROM Pizza WHERE idPizza NOT IN (SELECT Pizza_idPizza FROM Ingredient INNER JOIN Pizza_has_Ingredient PhI ON Ingredient.idIngredient = PhI.Ingredient_idIngredient WHERE Tier_idTier > (SELECT Tier_idTier FROM `User` WHERE email = ?))";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, email);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                Order order = new Order(rs);
-                result.add(order);
+    public static class Catalog {
+        private static final SerializedResponse EMPTY = SerializedResponse.of(Collections.emptyList());
+
+        private final long version;
+        private final Long revision;
+        private final List<Ingredient> ingredients;
+        private final List<Order> pizzas;
+        private final TreeMap<Integer, List<Ingredient>> ingredientsByTier = new TreeMap<>();
+        private final TreeMap<Integer, List<Order>> pizzasByTier = new TreeMap<>();
+        private final TreeMap<Integer, SerializedResponse> ingredientsJsonByTier = new TreeMap<>();
+        private final TreeMap<Integer, SerializedResponse> pizzasJsonByTier = new TreeMap<>();
+
+        /**
+         * Instantiates a new Catalog.
+         *
+         * @param version     the version of the catalog
+         * @param revision    the revision of the catalog tables the catalog was loaded from
+         * @param ingredients all ingredients
+         * @param pizzas      all pizzas
+         */
+        public Catalog(long version, Long revision, List<Ingredient> ingredients, List<Order> pizzas) {
+            this.version = version;
+            this.revision = revision;
+            this.ingredients = Collections.unmodifiableList(new ArrayList<>(ingredients));
+            this.pizzas = Collections.unmodifiableList(new ArrayList<>(pizzas));
+
+            for (Ingredient ingredient : this.ingredients) {
+                ingredientsByTier.put(ingredient.getTier(), null);
             }
-            stmt.close();
-            return result;
-        });
-    }
+            for (Map.Entry<Integer, List<Ingredient>> entry : ingredientsByTier.entrySet()) {
+                int tier = entry.getKey();
+                List<Ingredient> available = new ArrayList<>();
+                for (Ingredient ingredient : this.ingredients) {
+                    if (ingredient.getTier() <= tier) available.add(ingredient);
+                }
+                entry.setValue(Collections.unmodifiableList(available));
+                ingredientsJsonByTier.put(tier, SerializedResponse.of(available));
+
+                List<Order> availablePizzas = new ArrayList<>();
+                for (Order pizza : this.pizzas) {
+                    if (getRequiredTier(pizza) <= tier) availablePizzas.add(pizza);
+                }
+                pizzasByTier.put(tier, Collections.unmodifiableList(availablePizzas));
+                pizzasJsonByTier.put(tier, SerializedResponse.of(availablePizzas));
+            }
+        }
 
+        private static int getRequiredTier(Order pizza) {
+            int requiredTier = 0;
+            for (Ingredient ingredient : pizza.getIngredients()) {
+                if (ingredient != null) requiredTier = Math.max(requiredTier, ingredient.getTier());
+            }
+            return requiredTier;
+        }
 
-    // CLASSES --------------------------------------------------------------------------------------------------------
+        /**
+         * Gets the version; it is increased every time the catalog is reloaded.
+         *
+         * @return the version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Gets the revision of the catalog tables.
+         *
+         * @return the revision or null if it couldn't be read
+         */
+        public Long getRevision() {
+            return revision;
+        }
+
+        /**
+         * Gets all ingredients.
+         *
+         * @return the ingredient-List
+         */
+        public List<Ingredient> getIngredients() {
+            return ingredients;
+        }
+
+        /**
+         * Gets the ingredients available in a tier.
+         *
+         * @param tier the tier
+         * @return the ingredient-List
+         */
+        public List<Ingredient> getIngredients(int tier) {
+            Map.Entry<Integer, List<Ingredient>> entry = ingredientsByTier.floorEntry(tier);
+            return entry == null ? Collections.emptyList() : entry.getValue();
+        }
+
+        /**
+         * Gets all pizzas.
+         *
+         * @return the order list
+         */
+        public List<Order> getPizzas() {
+            return pizzas;
+        }
+
+        /**
+         * Gets the pizzas available in a tier.
+         *
+         * @param tier the tier
+         * @return the order list
+         */
+        public List<Order> getPizzas(int tier) {
+            Map.Entry<Integer, List<Order>> entry = pizzasByTier.floorEntry(tier);
+            return entry == null ? Collections.emptyList() : entry.getValue();
+        }
+
+        /**
+         * Gets the serialized ingredients available in a tier.
+         *
+         * @param tier the tier
+         * @return the serialized ingredient-List
+         */
+        public SerializedResponse getIngredientsJson(int tier) {
+            Map.Entry<Integer, SerializedResponse> entry = ingredientsJsonByTier.floorEntry(tier);
+            return entry == null ? EMPTY : entry.getValue();
+        }
+
+        /**
+         * Gets the serialized pizzas available in a tier.
+         *
+         * @param tier the tier
+         * @return the serialized order list
+         */
+        public SerializedResponse getPizzasJson(int tier) {
+            Map.Entry<Integer, SerializedResponse> entry = pizzasJsonByTier.floorEntry(tier);
+            return entry == null ? EMPTY : entry.getValue();
+        }
+    }
 
     /**
      * The type Ingredient.
@@ -251,12 +430,20 @@ public class PizzaRushFactory {
     public static class Ingredient {
         int id;
         String name; // https://gist.github.com/vikrum/4758434
+        // urls of the images
         String picture_raw;
         String picture_raw_distraction;
         String picture_processed;
         String picture_baked;
         String picture_burnt;
 
+        // the images as stored in the database; the Strings above are their urls in the ImageStore
+        byte[] picture_raw_data;
+        byte[] picture_raw_distraction_data;
+        byte[] picture_processed_data;
+        byte[] picture_baked_data;
+        byte[] picture_burnt_data;
+
         int zIndex;
         int tier;
 
@@ -272,36 +459,16 @@ public class PizzaRushFactory {
         public Ingredient(ResultSet rs) throws SQLException {
             this.id = rs.getInt("idIngredient");
             this.name = rs.getString("name");
-            BufferedInputStream bis_raw = new BufferedInputStream(rs.getBinaryStream("picture_raw"));
-            try {
-                this.picture_raw = encodeImageToString(ImageIO.read(bis_raw), "png");
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting \"picture_raw\"");
-            }
-            BufferedInputStream bis_raw_distraction = new BufferedInputStream(rs.getBinaryStream("picture_raw_distraction"));
-            try {
-                this.picture_raw_distraction = encodeImageToString(ImageIO.read(bis_raw_distraction), "png");
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting \"picture_raw_distraction\"");
-            }
-            BufferedInputStream bis_processed = new BufferedInputStream(rs.getBinaryStream("picture_processed"));
-            try {
-                this.picture_processed = encodeImageToString(ImageIO.read(bis_processed), "png");
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting \"picture_processed\"");
-            }
-            BufferedInputStream bis_baked = new BufferedInputStream(rs.getBinaryStream("picture_baked"));
-            try {
-                this.picture_baked = encodeImageToString(ImageIO.read(bis_baked), "png");
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting \"picture_baked\"");
-            }
-            BufferedInputStream bis_burnt = new BufferedInputStream(rs.getBinaryStream("picture_burnt"));
-            try {
-                this.picture_burnt = encodeImageToString(ImageIO.read(bis_burnt), "png");
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting \"picture_burnt\"");
-            }
+            this.picture_raw_data = StoredImages.read(rs, "picture_raw");
+            this.picture_raw = StoredImages.getUrl(picture_raw_data);
+            this.picture_raw_distraction_data = StoredImages.read(rs, "picture_raw_distraction");
+            this.picture_raw_distraction = StoredImages.getUrl(picture_raw_distraction_data);
+            this.picture_processed_data = StoredImages.read(rs, "picture_processed");
+            this.picture_processed = StoredImages.getUrl(picture_processed_data);
+            this.picture_baked_data = StoredImages.read(rs, "picture_baked");
+            this.picture_baked = StoredImages.getUrl(picture_baked_data);
+            this.picture_burnt_data = StoredImages.read(rs, "picture_burnt");
+            this.picture_burnt = StoredImages.getUrl(picture_burnt_data);
             this.zIndex = rs.getInt("zIndex");
             this.tier = rs.getInt("Tier_idTier");
         }
@@ -369,6 +536,16 @@ public class PizzaRushFactory {
             return picture_burnt;
         }
 
+        /**
+         * Gets the stored bytes of all pictures.
+         *
+         * @return the pictures
+         */
+        @JsonIgnore
+        public List<byte[]> getPictureData() {
+            return Arrays.asList(picture_raw_data, picture_raw_distraction_data, picture_processed_data, picture_baked_data, picture_burnt_data);
+        }
+
         public int getzIndex() {
             return zIndex;
         }
@@ -386,7 +563,7 @@ public class PizzaRushFactory {
     /**
      * The type Chopping ingredient.
      */
-    public class ChoppingIngredient extends Ingredient {
+    public static class ChoppingIngredient extends Ingredient {
 
         int vertex_x_inPercent;
         int vertex_y_inPercent;
@@ -403,26 +580,12 @@ public class PizzaRushFactory {
         public ChoppingIngredient(ResultSet rs) throws SQLException {
             super(rs);
 
-            setFlightBehaviorFromDatabase();
-        }
-
-        /**
-         * sets the Flight-Behaviour; gets called only in constructor
-         */
-        private void setFlightBehaviorFromDatabase() {
-            db.withConnection(conn -> {
-                PreparedStatement stmt = conn.prepareStatement("SELECT * FROM FlightBehavior WHERE Ingredient_fk = ? ");
-                stmt.setInt(1, this.id);
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    this.vertex_x_inPercent = rs.getInt("vertex_x_inPercent");
-                    this.vertex_y_inPercent = rs.getInt("vertex_y_inPercent");
-                    this.speed = rs.getDouble("speed");
-                    this.rotation = rs.getInt("rotation");
-                    this.hits_required = rs.getInt("hits_required");
-                }
-                stmt.close();
-            });
+            // the row already contains the joined FlightBehavior
+            this.vertex_x_inPercent = rs.getInt("vertex_x_inPercent");
+            this.vertex_y_inPercent = rs.getInt("vertex_y_inPercent");
+            this.speed = rs.getDouble("speed");
+            this.rotation = rs.getInt("rotation");
+            this.hits_required = rs.getInt("hits_required");
         }
 
         /**
@@ -475,11 +638,11 @@ public class PizzaRushFactory {
             return "ChoppingIngredient{" +
                     "id=" + id +
                     ", name='" + name + '\'' +
-                    ", picture_raw='" + picture_raw + '\'' +
-                    ", picture_raw_distractor='" + picture_raw_distraction + '\'' +
-                    ", picture_processed='" + picture_processed + '\'' +
-                    ", picture_baked='" + picture_baked + '\'' +
-                    ", picture_burnt='" + picture_burnt + '\'' +
+                    ", picture_raw='" + getPicture_raw() + '\'' +
+                    ", picture_raw_distractor='" + getPicture_raw_distraction() + '\'' +
+                    ", picture_processed='" + getPicture_processed() + '\'' +
+                    ", picture_baked='" + getPicture_baked() + '\'' +
+                    ", picture_burnt='" + getPicture_burnt() + '\'' +
                     ", tier=" + tier +
                     ", vertex_x_inPercent=" + vertex_x_inPercent +
                     ", vertex_y_inPercent=" + vertex_y_inPercent +
@@ -493,7 +656,7 @@ public class PizzaRushFactory {
     /**
      * The type Stamping ingredient.
      */
-    public class StampingIngredient extends Ingredient {
+    public static class StampingIngredient extends Ingredient {
 
         int display_time;
         int disabling_time;
@@ -508,24 +671,10 @@ public class PizzaRushFactory {
         public StampingIngredient(ResultSet rs) throws SQLException {
             super(rs);
 
-            setStampBehaviorFromDatabase();
-        }
-
-        /**
-         * sets Stamp-Behavior; gets called only in constructor
-         */
-        private void setStampBehaviorFromDatabase() {
-            db.withConnection(conn -> {
-                PreparedStatement stmt = conn.prepareStatement("SELECT * FROM StampBehavior WHERE Ingredient_fk = ? ");
-                stmt.setInt(1, this.id);
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    this.display_time = rs.getInt("display_time");
-                    this.disabling_time = rs.getInt("disabling_time");
-                    this.hits_required = rs.getInt("hits_required");
-                }
-                stmt.close();
-            });
+            // the row already contains the joined StampBehavior
+            this.display_time = rs.getInt("display_time");
+            this.disabling_time = rs.getInt("disabling_time");
+            this.hits_required = rs.getInt("hits_required");
         }
 
         /**
@@ -560,11 +709,11 @@ public class PizzaRushFactory {
             return "StampingIngredient{" +
                     "id=" + id +
                     ", name='" + name + '\'' +
-                    ", picture_raw='" + picture_raw + '\'' +
-                    ", picture_raw_distractor='" + picture_raw_distraction + '\'' +
-                    ", picture_processed='" + picture_processed + '\'' +
-                    ", picture_baked='" + picture_baked + '\'' +
-                    ", picture_burnt='" + picture_burnt + '\'' +
+                    ", picture_raw='" + getPicture_raw() + '\'' +
+                    ", picture_raw_distractor='" + getPicture_raw_distraction() + '\'' +
+                    ", picture_processed='" + getPicture_processed() + '\'' +
+                    ", picture_baked='" + getPicture_baked() + '\'' +
+                    ", picture_burnt='" + getPicture_burnt() + '\'' +
                     ", tier=" + tier +
                     ", display_time=" + display_time +
                     ", disabling_time=" + disabling_time +
@@ -585,34 +734,18 @@ public class PizzaRushFactory {
         List<Ingredient> ingredients;
 
         /**
-         * Instantiates a new Order.
+         * Instantiates a new Order with already loaded ingredients.
          *
-         * @param rs the rs
+         * @param rs          the rs
+         * @param ingredients the ingredients of the pizza
          * @throws SQLException the sql exception
          */
-        public Order(ResultSet rs) throws SQLException {
+        public Order(ResultSet rs, List<Ingredient> ingredients) throws SQLException {
             this.id = rs.getInt("idPizza");
             this.name = rs.getString("name");
             this.points = rs.getInt("points");
             this.order_time = rs.getInt("order_time");
-            this.ingredients = new ArrayList<>(setOrderIngredientsFromDatabase());
-        }
-
-        /**
-         * Sets the ingredients; gets called only in constructor.
-         */
-        private List<Ingredient> setOrderIngredientsFromDatabase() {
-            return db.withConnection(conn -> {
-                List<Ingredient> result = new ArrayList<>();
-                PreparedStatement stmt = conn.prepareStatement("SELECT Ingredient_idIngredient FROM `Pizza_has_Ingredient` WHERE Pizza_idPizza =? ");
-                stmt.setInt(1, getId());
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    result.add(getIngredientById(rs.getInt("Ingredient_idIngredient")));
-                }
-                stmt.close();
-                return result;
-            });
+            this.ingredients = ingredients;
         }
 
         /**
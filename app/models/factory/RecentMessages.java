@@ -0,0 +1,316 @@
+package models.factory;
+
+import com.typesafe.config.Config;
+import models.Message;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-process ring buffers of the newest messages of the active conversations, in front of the Message table.
+ * Each conversation keeps at most "recentMessages.capacity" messages (100 by default), at most
+ * "recentMessages.maxConversations" conversations (1000 by default) are kept, the least recently used first to go,
+ * and a conversation nobody read or wrote for "recentMessages.idleTimeout" (10 minutes by default) is dropped.
+ *
+ * A conversation is filled once from the db by the {@link UserFactory} and afterwards by the {@link MessageQueue}
+ * with every message it has written, so it always shows what is in the db.
+ */
+@Singleton
+public class RecentMessages {
+
+    private static final int DEFAULT_CAPACITY = 100;
+    private static final int DEFAULT_MAX_CONVERSATIONS = 1000;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    // messages of the same second are in the order they were written
+    private static final Comparator<Message> CHRONOLOGICAL = Comparator
+            .comparing((Message message) -> Timestamp.valueOf(message.getTime()))
+            .thenComparingInt(Message::getId);
+
+    private final int capacity;
+    private final int maxConversations;
+    private final long idleTimeoutNanos;
+
+    private final LinkedHashMap<Long, Conversation> conversations = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Instantiates new Recent messages with the sizes from the configuration.
+     *
+     * @param config the config
+     */
+    @Inject
+    public RecentMessages(Config config) {
+        this(config.hasPath("recentMessages.capacity") ? config.getInt("recentMessages.capacity") : DEFAULT_CAPACITY,
+                config.hasPath("recentMessages.maxConversations") ? config.getInt("recentMessages.maxConversations") : DEFAULT_MAX_CONVERSATIONS,
+                config.hasPath("recentMessages.idleTimeout") ? config.getDuration("recentMessages.idleTimeout") : DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Instantiates new Recent messages.
+     *
+     * @param capacity         the maximum number of messages per conversation
+     * @param maxConversations the maximum number of conversations
+     * @param idleTimeout      how long an unused conversation is kept
+     */
+    public RecentMessages(int capacity, int maxConversations, Duration idleTimeout) {
+        this.capacity = capacity;
+        this.maxConversations = maxConversations;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Gets the maximum number of messages per conversation.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the buffered messages of the conversation between two users.
+     *
+     * @param userA one user id
+     * @param userB the other user id
+     * @return the messages, or null if the conversation isn't buffered
+     */
+    public synchronized Snapshot get(int userA, int userB) {
+        evictIdle();
+        Conversation conversation = conversations.get(key(userA, userB));
+        if (conversation == null || conversation.loading) return null;
+        conversation.lastUsed = System.nanoTime();
+        return conversation.snapshot();
+    }
+
+    /**
+     * Starts buffering a conversation, messages written from now on are kept until {@link #finishLoading} adds the ones from the db.
+     *
+     * @param userA one user id
+     * @param userB the other user id
+     */
+    public synchronized void startLoading(int userA, int userB) {
+        evictIdle();
+        Long key = key(userA, userB);
+        if (conversations.containsKey(key)) return;
+        conversations.put(key, new Conversation(capacity));
+        if (conversations.size() > maxConversations) {
+            Iterator<Conversation> leastRecentlyUsed = conversations.values().iterator();
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    /**
+     * Adds the newest messages of a conversation read from the db.
+     *
+     * @param userA    one user id
+     * @param userB    the other user id
+     * @param newest   the newest messages from the db
+     * @param complete whether these are all messages of the conversation
+     * @return the buffered messages
+     */
+    public synchronized Snapshot finishLoading(int userA, int userB, List<Message> newest, boolean complete) {
+        Conversation conversation = conversations.get(key(userA, userB));
+        if (conversation == null) {
+            // evicted while loading, messages written meanwhile may be missing, so it is only used for this read
+            Conversation notBuffered = new Conversation(capacity);
+            notBuffered.load(newest, complete);
+            return notBuffered.snapshot();
+        }
+        // messages written while the db was read can be in both, the id tells them apart from equal messages
+        List<Message> merged = new ArrayList<>(newest);
+        Set<Integer> read = new HashSet<>();
+        for (Message message : newest) {
+            read.add(message.getId());
+        }
+        for (Message buffered : conversation.snapshot().getMessages()) {
+            if (!read.contains(buffered.getId())) merged.add(buffered);
+        }
+        conversation.load(merged, complete);
+        conversation.loading = false;
+        conversation.lastUsed = System.nanoTime();
+        return conversation.snapshot();
+    }
+
+    /**
+     * Drops a conversation whose loading failed, so it doesn't stay in the loading state.
+     *
+     * @param userA one user id
+     * @param userB the other user id
+     */
+    public synchronized void abortLoading(int userA, int userB) {
+        Long key = key(userA, userB);
+        Conversation conversation = conversations.get(key);
+        if (conversation != null && conversation.loading) conversations.remove(key);
+    }
+
+    /**
+     * Adds messages that were written to the db to their conversations, if they are buffered.
+     *
+     * @param written the messages
+     */
+    public synchronized void append(List<Message> written) {
+        for (Message message : written) {
+            Conversation conversation = conversations.get(key(message.getSender(), message.getReceiver()));
+            if (conversation != null) {
+                conversation.add(message);
+                conversation.lastUsed = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of buffered conversations.
+     *
+     * @return the number of conversations
+     */
+    public synchronized int size() {
+        return conversations.size();
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<Conversation> leastRecentlyUsed = conversations.values().iterator();
+        while (leastRecentlyUsed.hasNext()) {
+            Conversation conversation = leastRecentlyUsed.next();
+            if (conversation.loading || now - conversation.lastUsed <= idleTimeoutNanos) break;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private static Long key(int userA, int userB) {
+        return ((long) Math.min(userA, userB) << 32) | (Math.max(userA, userB) & 0xffffffffL);
+    }
+
+    private static Message copy(Message message) {
+        return new Message(message.getId(), message.getSender(), message.getReceiver(), message.getTime(), message.getMessage_text());
+    }
+
+    /**
+     * The ring buffer of one conversation, kept in chronological order.
+     * It holds every message after coveredAfter, which is null while it holds the whole conversation.
+     */
+    private static class Conversation {
+        private final Message[] ring;
+        private final Timestamp[] times;
+        private int start;
+        private int size;
+        private Timestamp coveredAfter;
+        private boolean loading = true;
+        private long lastUsed = System.nanoTime();
+
+        Conversation(int capacity) {
+            this.ring = new Message[capacity];
+            this.times = new Timestamp[capacity];
+        }
+
+        void load(List<Message> newest, boolean complete) {
+            Arrays.fill(ring, null);
+            Arrays.fill(times, null);
+            start = 0;
+            size = 0;
+            coveredAfter = null;
+            List<Message> chronological = new ArrayList<>(newest);
+            chronological.sort(CHRONOLOGICAL);
+            // older messages than the ones read are only in the db
+            if (!complete && !chronological.isEmpty()) coveredAfter = Timestamp.valueOf(chronological.get(0).getTime());
+            for (Message message : chronological) add(message);
+        }
+
+        void add(Message message) {
+            Timestamp time = Timestamp.valueOf(message.getTime());
+            if (size == ring.length) {
+                if (!time.after(times[start])) {
+                    // older than everything in the buffer, it stays in the db only
+                    cover(time);
+                    return;
+                }
+                cover(times[start]);
+                ring[start] = null;
+                times[start] = null;
+                start = (start + 1) % ring.length;
+                size--;
+            }
+            // messages are written nearly in order, so the place is almost always at the end
+            int position = size;
+            while (position > 0 && CHRONOLOGICAL.compare(ring[index(position - 1)], message) > 0) position--;
+            for (int i = size; i > position; i--) {
+                ring[index(i)] = ring[index(i - 1)];
+                times[index(i)] = times[index(i - 1)];
+            }
+            // the buffer keeps its own copy, readers add the usernames to theirs
+            ring[index(position)] = copy(message);
+            times[index(position)] = time;
+            size++;
+        }
+
+        private void cover(Timestamp dropped) {
+            if (coveredAfter == null || dropped.after(coveredAfter)) coveredAfter = dropped;
+        }
+
+        private int index(int position) {
+            return (start + position) % ring.length;
+        }
+
+        Snapshot snapshot() {
+            List<Message> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Message message = ring[index(i)];
+                messages.add(copy(message));
+            }
+            return new Snapshot(messages, coveredAfter);
+        }
+    }
+
+    /**
+     * A copy of the buffered messages of a conversation.
+     */
+    public static class Snapshot {
+        private final List<Message> messages;
+        private final Timestamp coveredAfter;
+
+        Snapshot(List<Message> messages, Timestamp coveredAfter) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.coveredAfter = coveredAfter;
+        }
+
+        /**
+         * Gets the messages in chronological order.
+         *
+         * @return the messages
+         */
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        /**
+         * Whether every message of the conversation after a point in time is in the snapshot.
+         *
+         * @param time the time
+         * @return true if older messages aren't needed from the db
+         */
+        public boolean covers(Timestamp time) {
+            return coveredAfter == null || time.after(coveredAfter);
+        }
+
+        /**
+         * Whether these are all messages of the conversation, otherwise older ones are only in the db.
+         *
+         * @return true if complete
+         */
+        public boolean isComplete() {
+            return coveredAfter == null;
+        }
+    }
+}
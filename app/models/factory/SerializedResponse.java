@@ -0,0 +1,78 @@
+package models.factory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A json response that is serialized once, together with its gzipped variant and a strong ETag.
+ */
+public class SerializedResponse {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final byte[] json;
+    private final byte[] gzipped;
+    private final String etag;
+
+    private SerializedResponse(byte[] json) {
+        this.json = json;
+        this.gzipped = gzip(json);
+        this.etag = "\"" + StoredImages.hash(json) + "\"";
+    }
+
+    /**
+     * Serializes a value to compact json.
+     *
+     * @param value the value
+     * @return the serialized response
+     */
+    public static SerializedResponse of(Object value) {
+        try {
+            return new SerializedResponse(OBJECT_MAPPER.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Gets the json.
+     *
+     * @return the json bytes
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * Gets the gzipped json.
+     *
+     * @return the gzipped json bytes
+     */
+    public byte[] getGzipped() {
+        return gzipped;
+    }
+
+    /**
+     * Gets the ETag.
+     *
+     * @return the quoted ETag
+     */
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -0,0 +1,94 @@
+package models.factory;
+
+import models.factory.factoryExceptions.ProfilePictureException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads images the way they are stored in the database, without decoding and re-encoding them.
+ */
+final class StoredImages {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The path under which {@link ImageStore} images are served, followed by their hash.
+     */
+    static final String URL_PREFIX = "/images/";
+
+    private StoredImages() {
+    }
+
+    /**
+     * Reads the stored bytes of an image column and checks that they are a PNG or JPEG image.
+     *
+     * @param rs     the rs
+     * @param column the column containing the image
+     * @return the image bytes
+     * @throws SQLException the sql exception
+     */
+    static byte[] read(ResultSet rs, String column) throws SQLException {
+        byte[] bytes = rs.getBytes(column);
+        if (bytes == null || getType(bytes) == null) {
+            throw new ProfilePictureException("We had trouble getting \"" + column + "\"");
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the image type from the signature of the bytes.
+     *
+     * @param bytes the image bytes
+     * @return "png", "jpeg" or null if the type is unknown
+     */
+    static String getType(byte[] bytes) {
+        if (startsWith(bytes, PNG_SIGNATURE)) return "png";
+        if (startsWith(bytes, JPEG_SIGNATURE)) return "jpeg";
+        return null;
+    }
+
+    /**
+     * Gets the content hash of the image bytes.
+     *
+     * @param bytes the image bytes
+     * @return the SHA-256 hash as hex-string
+     */
+    static String hash(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] hex = new byte[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gets the content-addressed url of the image bytes.
+     *
+     * @param bytes the image bytes
+     * @return the url
+     */
+    static String getUrl(byte[] bytes) {
+        return URL_PREFIX + hash(bytes);
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] signature) {
+        if (bytes.length < signature.length) return false;
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[i] != signature[i]) return false;
+        }
+        return true;
+    }
+}
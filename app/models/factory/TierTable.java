@@ -0,0 +1,155 @@
+package models.factory;
+
+import play.db.Database;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory copy of the Tier table, loaded once.
+ * Tiers are kept in order of their id; the total points they need are expected to grow with the id,
+ * so the highest tier a user can reach is found with a binary search.
+ */
+@Singleton
+public class TierTable {
+
+    private final Database db;
+
+    private volatile Tiers tiers;
+
+    /**
+     * Instantiates a new Tier table.
+     *
+     * @param db the db
+     */
+    @Inject
+    public TierTable(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Gets the tiers; loads them from the database if they haven't been loaded yet.
+     *
+     * @return the tiers
+     */
+    public Tiers getTiers() {
+        Tiers current = tiers;
+        if (current == null) {
+            synchronized (this) {
+                current = tiers;
+                if (current == null) {
+                    current = load();
+                    tiers = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Gets the name of a tier.
+     *
+     * @param tierId the tier id
+     * @return the name or null if there is no tier with the id
+     */
+    public String getName(int tierId) {
+        return getTiers().getName(tierId);
+    }
+
+    private Tiers load() {
+        return db.withConnection(conn -> {
+            List<Integer> ids = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<Integer> points = new ArrayList<>();
+            PreparedStatement stmt = conn.prepareStatement("SELECT idTier, name, gesamtpunkte FROM Tier ORDER BY idTier");
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt("idTier"));
+                names.add(rs.getString("name"));
+                points.add(rs.getInt("gesamtpunkte"));
+            }
+            stmt.close();
+            return new Tiers(ids, names, points);
+        });
+    }
+
+    /**
+     * Immutable tiers in order of their id.
+     */
+    public static class Tiers {
+        private final int[] ids;
+        private final String[] names;
+        private final int[] points;
+        private final String[] namesById;
+
+        public Tiers(List<Integer> ids, List<String> names, List<Integer> points) {
+            int size = ids.size();
+            this.ids = new int[size];
+            this.names = names.toArray(new String[0]);
+            this.points = new int[size];
+            int maxId = 0;
+            for (int i = 0; i < size; i++) {
+                this.ids[i] = ids.get(i);
+                this.points[i] = points.get(i);
+                maxId = Math.max(maxId, this.ids[i]);
+            }
+            this.namesById = new String[maxId + 1];
+            for (int i = 0; i < size; i++) {
+                if (this.ids[i] >= 0) namesById[this.ids[i]] = this.names[i];
+            }
+        }
+
+        /**
+         * Gets the number of tiers.
+         *
+         * @return the size
+         */
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * Gets the position of the highest tier whose points are reached, 0 if none is reached.
+         *
+         * @param totalPoints the total points of a user
+         * @return the 0-based position
+         */
+        public int getHighestReachedIndex(int totalPoints) {
+            int low = 0;
+            int high = points.length;
+            // find the first tier that needs more points
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (points[mid] <= totalPoints) low = mid + 1;
+                else high = mid;
+            }
+            return Math.max(0, low - 1);
+        }
+
+        public int getId(int index) {
+            return ids[index];
+        }
+
+        public String getNameAt(int index) {
+            return names[index];
+        }
+
+        public int getPointsAt(int index) {
+            return points[index];
+        }
+
+        /**
+         * Gets the name of a tier.
+         *
+         * @param tierId the tier id
+         * @return the name or null if there is no tier with the id
+         */
+        public String getName(int tierId) {
+            return tierId >= 0 && tierId < namesById.length ? namesById[tierId] : null;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package models.factory;
+
+import com.typesafe.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache of users, indexed by id, email and username.
+ * It holds at most "userCache.maxSize" users (10000 by default), each for at most
+ * "userCache.ttl" (10 minutes by default), and evicts the least recently used user first.
+ * The {@link UserFactory} writes changed users through to it.
+ *
+ * The cache keeps its own copy of every user and hands out copies, so a request changing its user
+ * doesn't change the user other requests see until it is saved and put back.
+ * Profile pictures are loaded on first use, a copy that loads its picture hands it back with {@link #putProfilePicture}.
+ */
+@Singleton
+public class UserCache {
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Integer> idByEmail = new HashMap<>();
+    private final Map<String, Integer> idByUsername = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Instantiates a new User cache with size and ttl from the configuration.
+     *
+     * @param config the config
+     */
+    @Inject
+    public UserCache(Config config) {
+        this(config.hasPath("userCache.maxSize") ? config.getInt("userCache.maxSize") : DEFAULT_MAX_SIZE,
+                config.hasPath("userCache.ttl") ? config.getDuration("userCache.ttl") : DEFAULT_TTL);
+    }
+
+    /**
+     * Instantiates a new User cache.
+     *
+     * @param maxSize the maximum number of users
+     * @param ttl     how long a user stays in the cache
+     */
+    public UserCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Gets a user by id.
+     *
+     * @param id the id
+     * @return a copy of the user or null if it isn't cached
+     */
+    public synchronized UserFactory.User getById(int id) {
+        return count(getEntry(id));
+    }
+
+    /**
+     * Gets a user by email.
+     *
+     * @param email the email
+     * @return a copy of the user or null if it isn't cached
+     */
+    public synchronized UserFactory.User getByEmail(String email) {
+        Integer id = idByEmail.get(email);
+        return count(id == null ? null : getEntry(id));
+    }
+
+    /**
+     * Gets a user by username.
+     *
+     * @param username the username
+     * @return a copy of the user or null if it isn't cached
+     */
+    public synchronized UserFactory.User getByUsername(String username) {
+        Integer id = idByUsername.get(username);
+        return count(id == null ? null : getEntry(id));
+    }
+
+    /**
+     * Adds a copy of a user or updates it with its current state.
+     *
+     * @param user the user
+     */
+    public synchronized void put(UserFactory.User user) {
+        remove(user.getId());
+        UserFactory.User copy = user.copy();
+        user.cached = copy;
+        byId.put(copy.getId(), new Entry(copy.getId(), copy, copy.getEmail(), copy.getUsername(), System.nanoTime()));
+        if (user.getEmail() != null) idByEmail.put(user.getEmail(), user.getId());
+        if (user.getUsername() != null) idByUsername.put(user.getUsername(), user.getId());
+
+        Iterator<Entry> eldest = byId.values().iterator();
+        while (byId.size() > maxSize && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            removeIndexes(entry);
+        }
+    }
+
+    /**
+     * Keeps the profile picture a user has loaded, so later copies don't read it again.
+     * It is only kept if the user is a copy of the cached user, a picture read before the user was changed is dropped.
+     *
+     * @param user the user that loaded its picture
+     * @param data the picture bytes or null if the user has none
+     */
+    public synchronized void putProfilePicture(UserFactory.User user, byte[] data) {
+        Entry entry = byId.get(user.getId());
+        if (entry != null && user.cached == entry.user) entry.user.setLoadedProfilePicture(data);
+    }
+
+    /**
+     * Removes a user, e.g. because it was changed without going through the cache.
+     *
+     * @param id the id of the user
+     */
+    public synchronized void invalidate(int id) {
+        remove(id);
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that weren't in the cache.
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the share of lookups answered from the cache.
+     *
+     * @return the hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Gets the number of cached users.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    private Entry getEntry(int id) {
+        Entry entry = byId.get(id);
+        if (entry != null && System.nanoTime() - entry.loadedAt >= ttlNanos) {
+            remove(id);
+            return null;
+        }
+        return entry;
+    }
+
+    private UserFactory.User count(Entry entry) {
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        UserFactory.User copy = entry.user.copy();
+        copy.cached = entry.user;
+        return copy;
+    }
+
+    private void remove(int id) {
+        Entry entry = byId.remove(id);
+        if (entry != null) removeIndexes(entry);
+    }
+
+    private void removeIndexes(Entry entry) {
+        if (entry.email != null) idByEmail.remove(entry.email, entry.id);
+        if (entry.username != null) idByUsername.remove(entry.username, entry.id);
+    }
+
+    private static class Entry {
+        final int id;
+        final UserFactory.User user;
+        final String email;
+        final String username;
+        final long loadedAt;
+
+        Entry(int id, UserFactory.User user, String email, String username, long loadedAt) {
+            this.id = id;
+            this.user = user;
+            this.email = email;
+            this.username = username;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -12,8 +12,7 @@ import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
@@ -25,16 +24,46 @@ import java.util.*;
 @Singleton
 public class UserFactory {
 
+    // every column of User except the profile picture, which is loaded on demand
+    private static final String USER_COLUMNS = "idUser, username, email, gesamtpunkte, highscore, Tier_idTier";
+    // the order the history pages are cut in, the same (time, idMessage) order as in the queries
+    private static final Comparator<Message> NEWEST_MESSAGE_FIRST = Comparator
+            .comparing((Message message) -> Timestamp.valueOf(message.getTime()))
+            .thenComparingInt(Message::getId)
+            .reversed();
+
     private final Database db;
+    private final ImageCodec imageCodec;
+    private final UserCache userCache;
+    private final Leaderboard leaderboard;
+    private final FriendGraph friendGraph;
+    private final TierTable tierTable;
+    private final MessageQueue messageQueue;
+    private final RecentMessages recentMessages;
 
     /**
      * Instantiates a new User factory.
      *
-     * @param db the db
+     * @param db             the db
+     * @param imageCodec     the image codec
+     * @param userCache      the user cache
+     * @param leaderboard    the leaderboard
+     * @param friendGraph    the friend graph
+     * @param tierTable      the tier table
+     * @param messageQueue   the message queue
+     * @param recentMessages the recent messages
      */
     @Inject
-    public UserFactory(Database db) {
+    public UserFactory(Database db, ImageCodec imageCodec, UserCache userCache, Leaderboard leaderboard, FriendGraph friendGraph, TierTable tierTable,
+                       MessageQueue messageQueue, RecentMessages recentMessages) {
         this.db = db;
+        this.imageCodec = imageCodec;
+        this.userCache = userCache;
+        this.leaderboard = leaderboard;
+        this.friendGraph = friendGraph;
+        this.tierTable = tierTable;
+        this.messageQueue = messageQueue;
+        this.recentMessages = recentMessages;
     }
 
     /**
@@ -47,7 +76,7 @@ public class UserFactory {
     public User authenticateUser(String email, String password) {
         return db.withConnection(conn -> {
             User user = null;
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM User WHERE email = ? AND password = ?");
+            PreparedStatement stmt = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM User WHERE email = ? AND password = ?");
             stmt.setString(1, email);
             stmt.setString(2, password);
             ResultSet rs = stmt.executeQuery();
@@ -110,13 +139,16 @@ public class UserFactory {
     public User getUserByEmail(String email) {
         if (!email.matches("[a-zA-Z0-9._%+-]+[@]+[a-zA-Z0-9.-]+[.]+[a-zA-Z]{2,6}"))
             throw new InvalidEmailException("The e-mail \"" + email + "\" is not valid");
+        User cached = userCache.getByEmail(email);
+        if (cached != null) return cached;
         return db.withConnection(conn -> {
             User user = null;
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM User WHERE email = ?");
+            PreparedStatement stmt = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM User WHERE email = ?");
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 user = new User(rs);
+                userCache.put(user);
             }
             stmt.close();
             return user;
@@ -141,13 +173,16 @@ public class UserFactory {
      * @return the user by username
      */
     public User getUserByUsername(String username) {
+        User cached = userCache.getByUsername(username);
+        if (cached != null) return cached;
         return db.withConnection(conn -> {
             User user = null;
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM User WHERE username = ?");
+            PreparedStatement stmt = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM User WHERE username = ?");
             stmt.setString(1, username);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 user = new User(rs);
+                userCache.put(user);
             }
             stmt.close();
             return user;
@@ -161,13 +196,16 @@ public class UserFactory {
      * @return User if found, else null
      */
     public User getUserById(int id) {
+        User cached = userCache.getById(id);
+        if (cached != null) return cached;
         return db.withConnection(conn -> {
             User user = null;
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM User WHERE idUser = ?");
+            PreparedStatement stmt = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM User WHERE idUser = ?");
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 user = new User(rs);
+                userCache.put(user);
             }
             stmt.close();
             return user;
@@ -192,7 +230,7 @@ public class UserFactory {
     public List<User> getAllUsers() {
         return db.withConnection(conn -> {
             List<User> users = new ArrayList<>();
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM User");
+            PreparedStatement stmt = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM User");
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 User user = new User(rs);
@@ -209,23 +247,84 @@ public class UserFactory {
      * @return ArrayList of String[]{username, highscore}
      */
     public ArrayList<String[]> getHighscoreData() {
-
-        List<UserFactory.User> users = getAllUsers();
-        users.sort(Comparator.comparing(User::getHighScore).reversed());
-
         ArrayList<String[]> data = new ArrayList<>();
+        for (Leaderboard.Entry entry : leaderboard.getTop(10)) {
+            data.add(new String[]{entry.getUsername(), String.valueOf(entry.getHighScore())});
+        }
+        return data;
+    }
 
-        for (int i = 0; i < Math.min(users.size(), 10); i++) {
-            User current = users.get(i);
 
-            if (current.getHighScore() > 0) {
-                String[] entry = new String[]{current.getUsername(), String.valueOf(current.getHighScore())};
-                data.add(entry);
+    /**
+     * Gets users by id, taking cached users from the cache and loading the others with one query.
+     *
+     * @param ids the ids
+     * @return the users that exist, in the order of the ids
+     */
+    public List<User> getUsersById(int[] ids) {
+        Map<Integer, User> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int id : ids) {
+            User cached = userCache.getById(id);
+            if (cached != null) found.put(id, cached);
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            db.withConnection(conn -> {
+                PreparedStatement stmt = conn.prepareStatement("SELECT " + USER_COLUMNS + " FROM User WHERE idUser IN (" + placeholders(missing.size()) + ")");
+                for (int i = 0; i < missing.size(); i++) {
+                    stmt.setInt(i + 1, missing.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    User user = new User(rs);
+                    userCache.put(user);
+                    found.put(user.getId(), user);
+                }
+                stmt.close();
+            });
+        }
+        List<User> users = new ArrayList<>(found.size());
+        for (int id : ids) {
+            User user = found.get(id);
+            if (user != null) users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Loads the profile pictures of users that haven't loaded theirs yet with one query.
+     *
+     * @param users the users
+     */
+    private void loadProfilePictures(List<User> users) {
+        Map<Integer, User> missing = new HashMap<>();
+        for (User user : users) {
+            synchronized (user) {
+                if (!user.profilePictureLoaded) missing.put(user.getId(), user);
             }
         }
-        return data;
+        if (missing.isEmpty()) return;
+        db.withConnection(conn -> {
+            PreparedStatement stmt = conn.prepareStatement("SELECT idUser, profilepicture FROM User WHERE idUser IN (" + placeholders(missing.size()) + ")");
+            int index = 1;
+            for (int id : missing.keySet()) {
+                stmt.setInt(index++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                User user = missing.get(rs.getInt("idUser"));
+                byte[] data = rs.getBytes("profilepicture");
+                user.setLoadedProfilePicture(data);
+                userCache.putProfilePicture(user, data);
+            }
+            stmt.close();
+        });
     }
 
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 
     /**
      * The type User.
@@ -237,7 +336,11 @@ public class UserFactory {
         private int totalPoints;
         private int highScore;
         private BufferedImage profilePicture;
+        private byte[] profilePictureData; // the profile picture as stored in the database
+        private boolean profilePictureLoaded;
         private int currentTier;
+        // the copy in the UserCache this user was put as or copied from, it gets the profile picture once it is loaded
+        User cached;
 
         /**
          * Instantiates a new User.
@@ -257,11 +360,13 @@ public class UserFactory {
             this.totalPoints = totalPoints;
             this.highScore = highScore;
             this.profilePicture = profilePicture;
+            this.profilePictureLoaded = true;
             this.currentTier = currentTier;
         }
 
         /**
-         * Instantiates a new User with ResultSet from db
+         * Instantiates a new User with ResultSet from db.
+         * The profile picture isn't part of the ResultSet, it is loaded when it's first needed.
          *
          * @param rs the ResultSet from db
          * @throws SQLException if result set doesnt contain values
@@ -272,15 +377,76 @@ public class UserFactory {
             this.email = rs.getString("email");
             this.totalPoints = rs.getInt("gesamtpunkte");
             this.highScore = rs.getInt("highscore");
-            BufferedInputStream bis = new BufferedInputStream(rs.getBinaryStream("profilepicture"));
-            try {
-                profilePicture = ImageIO.read(bis);
-            } catch (IOException invalidProfilePicture) {
-                throw new ProfilePictureException("We had trouble getting the profile picture");
-            }
             this.currentTier = rs.getInt("Tier_idTier");
         }
 
+        /**
+         * Instantiates a copy of a User, with the profile picture if the other user has loaded it.
+         *
+         * @param other the user to copy
+         */
+        private User(User other) {
+            synchronized (other) {
+                this.id = other.id;
+                this.username = other.username;
+                this.email = other.email;
+                this.totalPoints = other.totalPoints;
+                this.highScore = other.highScore;
+                this.profilePicture = other.profilePicture;
+                this.profilePictureData = other.profilePictureData;
+                this.profilePictureLoaded = other.profilePictureLoaded;
+                this.currentTier = other.currentTier;
+            }
+        }
+
+        /**
+         * Copies the user, so the copy can be changed without changing this user.
+         *
+         * @return the copy
+         */
+        User copy() {
+            return new User(this);
+        }
+
+        /**
+         * Gets the profile picture as stored in the database, loading it on first use.
+         *
+         * @return the picture bytes or null if the user has none
+         */
+        private byte[] getProfilePictureData() {
+            byte[] loaded;
+            synchronized (this) {
+                if (profilePictureLoaded) return profilePictureData;
+                profilePictureData = db.withConnection(conn -> {
+                    byte[] data = null;
+                    PreparedStatement stmt = conn.prepareStatement("SELECT profilepicture FROM User WHERE idUser = ?");
+                    stmt.setInt(1, this.id);
+                    ResultSet rs = stmt.executeQuery();
+                    if (rs.next()) {
+                        data = rs.getBytes("profilepicture");
+                    }
+                    stmt.close();
+                    return data;
+                });
+                profilePictureLoaded = true;
+                loaded = profilePictureData;
+            }
+            // outside of the lock of this user, the cache locks itself first and then the cached copy
+            userCache.putProfilePicture(this, loaded);
+            return loaded;
+        }
+
+        /**
+         * Sets the profile picture as loaded from the database, unless the user already has one.
+         *
+         * @param data the picture bytes or null if the user has none
+         */
+        synchronized void setLoadedProfilePicture(byte[] data) {
+            if (profilePictureLoaded) return;
+            profilePictureData = data;
+            profilePictureLoaded = true;
+        }
+
         /**
          * Updates the user if it already exists and creates it otherwise. Assumes an
          * autoincrement id column.
@@ -299,6 +465,8 @@ public class UserFactory {
                 stmt.executeUpdate();
                 stmt.close();
             });
+            userCache.put(this);
+            leaderboard.update(this.id, this.username, this.highScore);
         }
 
         /**
@@ -312,6 +480,19 @@ public class UserFactory {
                 stmt.executeUpdate();
                 stmt.close();
             });
+            userCache.invalidate(this.id);
+            leaderboard.remove(this.id);
+            friendGraph.removeUser(this.id);
+        }
+
+        /**
+         * Checks whether another user is a friend of this user.
+         *
+         * @param user2 the other user
+         * @return true if they are friends
+         */
+        public boolean isFriend(User user2) {
+            return user2 != null && friendGraph.areFriends(this.id, user2.getId());
         }
 
         /**
@@ -323,36 +504,26 @@ public class UserFactory {
         public boolean addFriend(int id2) {
             if (this.id == id2) return false;
 
-            List<User> allUsers = getAllUsers();
-            List<User> friends = getFriends();
-            boolean id2Exists = false;
-            boolean alreadyFriend = false;
-
-            for (User user : allUsers) {        //checken ob es User mit der id gibt
-                if (user.getId() == id2) {
-                    id2Exists = true;
-                    break;
-                }
-            }
-
-            for (User user : friends) {         //checken ob sie schon befreundet sind
-                if (user.getId() == id2) {
-                    alreadyFriend = true;
-                    break;
-                }
-            }
+            if (friendGraph.areFriends(this.id, id2)) return false;      //checken ob sie schon befreundet sind
+            if (getUserById(id2) == null) return false;                  //checken ob es User mit der id gibt
 
-            if (id2Exists && !alreadyFriend) {
-                db.withConnection(conn -> {
-                    PreparedStatement stmt = conn.prepareStatement("INSERT INTO `Friendship` (User_idUser_one, User_idUser_two) VALUES (?, ?)");
-                    stmt.setInt(1, this.id);
-                    stmt.setInt(2, id2);
+            boolean inserted = db.withConnection(conn -> {
+                // the smaller id goes first, so the primary key also rejects the pair when both users add each other at once
+                PreparedStatement stmt = conn.prepareStatement("INSERT INTO `Friendship` (User_idUser_one, User_idUser_two) VALUES (?, ?)");
+                stmt.setInt(1, Math.min(this.id, id2));
+                stmt.setInt(2, Math.max(this.id, id2));
+                try {
                     stmt.executeUpdate();
+                    return true;
+                } catch (SQLIntegrityConstraintViolationException alreadyFriends) {
+                    // a concurrent request saved the friendship first
+                    return false;
+                } finally {
                     stmt.close();
-                });
-                return true;
-            }
-            return false;
+                }
+            });
+            if (inserted) friendGraph.addFriendship(this.id, id2);
+            return inserted;
         }
 
         /**
@@ -361,25 +532,19 @@ public class UserFactory {
          * @return the friends-List
          */
         public List<User> getFriends() {
-            return db.withConnection(conn -> {
-                List<User> result = new ArrayList<>();
-                String sql = "SELECT * FROM `Friendship` WHERE User_idUser_One = ? OR User_idUser_Two = ?";
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                stmt.setInt(1, this.id);
-                stmt.setInt(2, this.id);
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
+            return getUsersById(friendGraph.getFriendIds(this.id));
+        }
 
-                    int friendId = (int) rs.getObject("User_idUser_one");
-                    if (friendId == this.id) {
-                        friendId = (int) rs.getObject("User_idUser_two");
-                    }
-                    User user = getUserById(friendId);
-                    result.add(user);
-                }
-                stmt.close();
-                return result;
-            });
+        /**
+         * Gets the leaderboard of this user and its friends.
+         *
+         * @return the positions, ranked among the friends
+         */
+        public List<Leaderboard.Position> getFriendsLeaderboard() {
+            int[] friendIds = friendGraph.getFriendIds(this.id);
+            int[] userIds = Arrays.copyOf(friendIds, friendIds.length + 1);
+            userIds[friendIds.length] = this.id;
+            return leaderboard.getPositions(userIds);
         }
 
         /**
@@ -390,6 +555,7 @@ public class UserFactory {
         public Map<String, String> getFriendsData() {
 
             List<User> users = getFriends();
+            loadProfilePictures(users);
 
             Map<String, String> data = new HashMap<>();
 
@@ -404,7 +570,7 @@ public class UserFactory {
 
 
         /**
-         * Gets messages-List from db sent to and retrieved from user2.
+         * Gets messages-List sent to and retrieved from user2, from the {@link RecentMessages} if they hold the whole conversation.
          *
          * @param user2 the user 2
          * @return the messages
@@ -412,21 +578,20 @@ public class UserFactory {
         public List<Message> getMessages(User user2) {
             if (user2 == null) return null;
 
-            List<User> friends = getFriends();
-
-            boolean isFriend = false;  //checken, ob sie befreundet sind
-            for (User user : friends) {
-                if (user.getId() == user2.getId()) {
-                    isFriend = true;
-                    break;
+            if (friendGraph.areFriends(this.id, user2.getId())) {
+                // a conversation that fits into the RecentMessages is served from there, longer ones only from the db
+                RecentMessages.Snapshot recent = getRecentMessages(user2);
+                if (recent.isComplete()) {
+                    List<Message> result = new ArrayList<>();
+                    for (Message message : recent.getMessages()) {
+                        result.add(withNames(message, user2));
+                    }
+                    return result;
                 }
-            }
-
-            if (isFriend) {
                 return db.withConnection(conn -> {
                     List<Message> result = new ArrayList<>();
 
-                    String sql = "SELECT * FROM `Message` WHERE (sender = ? AND receiver = ?) OR (sender = ? AND receiver = ?) ORDER BY `time`";
+                    String sql = "SELECT * FROM `Message` WHERE (sender = ? AND receiver = ?) OR (sender = ? AND receiver = ?) ORDER BY `time`, idMessage";
                     PreparedStatement stmt = conn.prepareStatement(sql);
                     stmt.setInt(1, this.id);
                     stmt.setInt(2, user2.getId());
@@ -434,16 +599,7 @@ public class UserFactory {
                     stmt.setInt(4, this.id);
                     ResultSet rs = stmt.executeQuery();
                     while (rs.next()) {
-                        Message message = new Message(rs);
-                        //ich füge für jedes Message Objekt noch den username der Beteiligten hinzu
-                        if (message.getSender() == this.id) {
-                            message.setSenderName(this.getUsername());
-                            message.setReceiverName(user2.getUsername());
-                        } else {
-                            message.setReceiverName(this.getUsername());
-                            message.setSenderName(user2.getUsername());
-                        }
-                        result.add(message);
+                        result.add(withNames(new Message(rs), user2));
                     }
                     stmt.close();
                     return result;
@@ -453,42 +609,195 @@ public class UserFactory {
         }
 
         /**
-         * Inserts a new Row into Message db-Table.
+         * Gets the messages user2 sent to this user at or after a point in time, the chat polls with this
+         * instead of reloading the whole conversation. Times are stored in whole seconds, so messages sent in the
+         * same second as the cursor are returned again and the client tells with skip how many of them it already has.
+         * They come from the {@link RecentMessages} of the conversation whenever those reach back far enough.
          *
-         * @param receiverId   the receiver id
-         * @param timestamp    the timestamp
-         * @param message_text the message text
+         * @param user2 the user 2
+         * @param since the time of the newest message the client has
+         * @param skip  the number of messages at exactly that time the client has
+         * @return the new messages, or null if the users aren't friends
          */
-        public void sendMessage(int receiverId, Timestamp timestamp, String message_text) {
-            db.withConnection(conn -> {
-                String sql = "INSERT INTO `Message` (sender, receiver, time, message_text ) VALUES (?, ?, ?, ?)";
+        public List<Message> getMessagesSince(User user2, Timestamp since, int skip) {
+            if (user2 == null) return null;
+            if (!friendGraph.areFriends(this.id, user2.getId())) return null;
+
+            RecentMessages.Snapshot recent = getRecentMessages(user2);
+            if (recent.covers(since)) {
+                List<Message> result = new ArrayList<>();
+                int skipped = 0;
+                for (Message message : recent.getMessages()) {
+                    if (message.getSender() != user2.getId()) continue;
+                    Timestamp time = Timestamp.valueOf(message.getTime());
+                    if (time.before(since)) continue;
+                    if (skipped < skip && time.equals(since)) {
+                        skipped++;
+                        continue;
+                    }
+                    result.add(withNames(message, user2));
+                }
+                return result;
+            }
+
+            return db.withConnection(conn -> {
+                List<Message> result = new ArrayList<>();
+
+                // range scan on the (sender, receiver, time) index from conf/sql/message_index.sql
+                String sql = "SELECT * FROM `Message` WHERE sender = ? AND receiver = ? AND `time` >= ? ORDER BY `time`, idMessage";
                 PreparedStatement stmt = conn.prepareStatement(sql);
-                stmt.setInt(1, this.id);
-                stmt.setInt(2, receiverId);
-                stmt.setObject(3, timestamp);
-                stmt.setString(4, message_text);
-                stmt.executeUpdate();
+                stmt.setInt(1, user2.getId());
+                stmt.setInt(2, this.id);
+                stmt.setTimestamp(3, since);
+                ResultSet rs = stmt.executeQuery();
+                int skipped = 0;
+                while (rs.next()) {
+                    if (skipped < skip && since.equals(rs.getTimestamp("time"))) {
+                        skipped++;
+                        continue;
+                    }
+                    result.add(withNames(new Message(rs), user2));
+                }
                 stmt.close();
+                return result;
+            });
+        }
+
+        /**
+         * Gets one page of the conversation with user2, newest page first. The page ends right before the oldest
+         * message the client has, identified by its time and id, so opening or scrolling up a chat reads the same
+         * amount of rows however long it is. Pages within the {@link RecentMessages} of the conversation don't need the db.
+         *
+         * @param user2    the user 2
+         * @param before   the time of the oldest message the client has, or null for the newest page
+         * @param beforeId the id of that message
+         * @param count    the maximum number of messages
+         * @return the messages in chronological order, or null if the users aren't friends
+         */
+        public List<Message> getMessageHistory(User user2, Timestamp before, int beforeId, int count) {
+            if (user2 == null) return null;
+            if (!friendGraph.areFriends(this.id, user2.getId())) return null;
+
+            RecentMessages.Snapshot recent = getRecentMessages(user2);
+            List<Message> newestFirst = new ArrayList<>(recent.getMessages());
+            newestFirst.sort(NEWEST_MESSAGE_FIRST);
+            List<Message> page = cutPage(newestFirst, before, beforeId, count);
+            // the buffer can serve the page if it is the whole conversation or has every message down to the page's oldest
+            if (recent.isComplete() || (page.size() == count && recent.covers(Timestamp.valueOf(page.get(0).getTime())))) {
+                page.forEach(message -> withNames(message, user2));
+                return page;
+            }
+            return readMessageHistory(user2, before, beforeId, count);
+        }
+
+        /**
+         * Reads a page of the conversation with user2 from the db, see {@link #getMessageHistory}.
+         */
+        private List<Message> readMessageHistory(User user2, Timestamp before, int beforeId, int count) {
+            return db.withConnection(conn -> {
+                // each direction is one range of the (sender, receiver, time, idMessage) index, the two are merged here
+                List<Message> newestFirst = new ArrayList<>();
+                readNewestMessages(conn, this.id, user2, before, beforeId, count, newestFirst);
+                readNewestMessages(conn, user2.getId(), user2, before, beforeId, count, newestFirst);
+                newestFirst.sort(NEWEST_MESSAGE_FIRST);
+                return cutPage(newestFirst, before, beforeId, count);
             });
         }
 
+        /**
+         * Cuts the page of messages before (before, beforeId) out of messages sorted newest first and returns it in chronological order.
+         */
+        private List<Message> cutPage(List<Message> newestFirst, Timestamp before, int beforeId, int count) {
+            int from = 0;
+            if (before != null) {
+                while (from < newestFirst.size() && !isBefore(newestFirst.get(from), before, beforeId)) from++;
+            }
+            List<Message> page = new ArrayList<>(newestFirst.subList(from, Math.min(from + count, newestFirst.size())));
+            Collections.reverse(page);
+            return page;
+        }
+
+        private boolean isBefore(Message message, Timestamp before, int beforeId) {
+            Timestamp time = Timestamp.valueOf(message.getTime());
+            return time.before(before) || (time.equals(before) && message.getId() < beforeId);
+        }
+
+        /**
+         * Gets the buffered newest messages of the conversation with user2, reading them from the db if they aren't buffered.
+         */
+        private RecentMessages.Snapshot getRecentMessages(User user2) {
+            RecentMessages.Snapshot recent = recentMessages.get(this.id, user2.getId());
+            if (recent != null) return recent;
+            recentMessages.startLoading(this.id, user2.getId());
+            int capacity = recentMessages.getCapacity();
+            List<Message> newest;
+            try {
+                newest = readMessageHistory(user2, null, 0, capacity);
+            } catch (RuntimeException e) {
+                recentMessages.abortLoading(this.id, user2.getId());
+                throw e;
+            }
+            return recentMessages.finishLoading(this.id, user2.getId(), newest, newest.size() < capacity);
+        }
+
+        /**
+         * Reads the newest messages one side of the conversation with user2 sent before (before, beforeId).
+         */
+        private void readNewestMessages(Connection conn, int sender, User user2, Timestamp before, int beforeId, int limit, List<Message> into) throws SQLException {
+            int receiver = sender == this.id ? user2.getId() : this.id;
+            String sql = "SELECT * FROM `Message` WHERE sender = ? AND receiver = ?"
+                    + (before != null ? " AND (`time` < ? OR (`time` = ? AND idMessage < ?))" : "")
+                    + " ORDER BY `time` DESC, idMessage DESC LIMIT ?";
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            int index = 1;
+            stmt.setInt(index++, sender);
+            stmt.setInt(index++, receiver);
+            if (before != null) {
+                stmt.setTimestamp(index++, before);
+                stmt.setTimestamp(index++, before);
+                stmt.setInt(index++, beforeId);
+            }
+            stmt.setInt(index, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                into.add(withNames(new Message(rs), user2));
+            }
+            stmt.close();
+        }
+
+        /**
+         * Adds the usernames of both users to a message between this user and user2.
+         */
+        private Message withNames(Message message, User user2) {
+            if (message.getSender() == this.id) {
+                message.setSenderName(this.getUsername());
+                message.setReceiverName(user2.getUsername());
+            } else {
+                message.setReceiverName(this.getUsername());
+                message.setSenderName(user2.getUsername());
+            }
+            return message;
+        }
+
+        /**
+         * Queues a new Row for the Message db-Table, it is written in the next batch of the {@link MessageQueue}.
+         *
+         * @param receiverId   the receiver id
+         * @param timestamp    the timestamp
+         * @param message_text the message text
+         * @return true if the message was accepted, false if the queue is full or the message couldn't be written
+         */
+        public boolean sendMessage(int receiverId, Timestamp timestamp, String message_text) {
+            return messageQueue.enqueue(new Message(this.id, receiverId, timestamp.toString(), message_text));
+        }
+
         /**
          * Gets name of Tier from tier id.
          *
          * @return the name from tier id
          */
         public String getNameFromTierId() {
-            return db.withConnection(conn -> {
-                String tierName = null;
-                PreparedStatement stmt = conn.prepareStatement("SELECT name FROM `Tier` WHERE idTier = ?");
-                stmt.setInt(1, this.currentTier);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    tierName = rs.getString("name");
-                }
-                stmt.close();
-                return tierName;
-            });
+            return tierTable.getName(this.currentTier);
         }
 
         /**
@@ -506,6 +815,8 @@ public class UserFactory {
          * @param id the id
          */
         public void setId(int id) {
+            userCache.invalidate(this.id);
+            leaderboard.remove(this.id);
             this.id = id;
             save();
         }
@@ -592,7 +903,14 @@ public class UserFactory {
          * @return the profile picture
          */
         public BufferedImage getProfilePicture() {
-            return profilePicture;
+            if (profilePicture != null) return profilePicture;
+            byte[] data = getProfilePictureData();
+            if (data == null) return null;
+            try {
+                return ImageIO.read(new ByteArrayInputStream(data));
+            } catch (IOException invalidProfilePicture) {
+                throw new ProfilePictureException("We had trouble getting the profile picture");
+            }
         }
 
         /**
@@ -600,8 +918,10 @@ public class UserFactory {
          *
          * @param profilePicture the profile picture
          */
-        public void setProfilePicture(BufferedImage profilePicture) {
+        public synchronized void setProfilePicture(BufferedImage profilePicture) {
             this.profilePicture = profilePicture;
+            this.profilePictureData = null;
+            this.profilePictureLoaded = true;
         }
 
         /**
@@ -610,37 +930,17 @@ public class UserFactory {
          * @return the profile picture src
          */
         public String getProfilePictureSrc() {
+            byte[] data = profilePicture == null ? getProfilePictureData() : null;
+            if (data != null && StoredImages.getType(data) != null) {
+                return imageCodec.encode(data);
+            }
             String path = null;
             if (profilePicture != null) {
-                path = encodeToString(profilePicture, "jpg");
+                path = imageCodec.encode(profilePicture, "jpg");
             }
             return path;
         }
 
-        /**
-         * Encode to string string.
-         *
-         * @param image the image
-         * @param type  the type
-         * @return the string
-         */
-        public String encodeToString(BufferedImage image, String type) {
-            String imageString = null;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-            try {
-                ImageIO.write(image, type, bos);
-                byte[] imageBytes = bos.toByteArray();
-
-                imageString = "data:image/" + type + ";base64," + Base64.getEncoder().encodeToString(imageBytes);
-
-                bos.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return imageString;
-        }
-
         public void updateProfilePicture(String sourceData) {
             db.withConnection(conn -> {
                 String sql = "UPDATE User SET profilepicture=? WHERE idUser = ?";
@@ -657,6 +957,13 @@ public class UserFactory {
                 stmt.executeUpdate();
                 stmt.close();
             });
+            synchronized (this) {
+                profilePicture = null;
+                profilePictureData = null;
+                profilePictureLoaded = false;
+            }
+            // the cached user still has the old picture
+            userCache.invalidate(this.id);
         }
 
         /**
@@ -0,0 +1,243 @@
+package models.factory;
+
+import play.db.Database;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Daily and weekly leaderboards of the best score a user reached in a single game.
+ * Only the current window of each board is kept in memory; when a window ends the board starts empty.
+ * Every accepted score is also written to the WindowScore table, which is read back on the first use
+ * after a restart and cleaned of past windows when a window ends; the table is created by conf/sql/window_score.sql.
+ * The boards are kept behind a read-write lock like the {@link Leaderboard}, the db is only used outside of it.
+ */
+@Singleton
+public class WindowedLeaderboards {
+
+    /**
+     * The time windows, starting at midnight and on Monday at midnight in the clock's time zone.
+     */
+    public enum Window {
+        DAILY, WEEKLY;
+
+        Instant getStart(Clock clock) {
+            LocalDate today = LocalDate.now(clock);
+            LocalDate start = this == DAILY ? today : today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            return start.atStartOfDay(clock.getZone()).toInstant();
+        }
+    }
+
+    private final Database db;
+    private final Clock clock;
+
+    private final Map<Window, Board> boards = new EnumMap<>(Window.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    /**
+     * Instantiates new Windowed leaderboards using the system clock.
+     *
+     * @param db the db
+     */
+    @Inject
+    public WindowedLeaderboards(Database db) {
+        this(db, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Instantiates new Windowed leaderboards.
+     *
+     * @param db    the db
+     * @param clock the clock deciding when windows start
+     */
+    public WindowedLeaderboards(Database db, Clock clock) {
+        this.db = db;
+        this.clock = clock;
+    }
+
+    /**
+     * Records the score of a finished game on every board.
+     *
+     * @param userId   the user id
+     * @param username the username
+     * @param score    the score of the game
+     */
+    public void submit(int userId, String username, int score) {
+        if (score <= 0) return;
+        Map<Window, Board> current = new EnumMap<>(Window.class);
+        for (Window window : Window.values()) {
+            current.put(window, getBoard(window));
+        }
+        db.withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO `WindowScore` (timeWindow, windowStart, User_idUser, score) VALUES (?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE score = GREATEST(score, VALUES(score))")) {
+                for (Map.Entry<Window, Board> board : current.entrySet()) {
+                    stmt.setString(1, board.getKey().name());
+                    stmt.setTimestamp(2, Timestamp.from(board.getValue().start));
+                    stmt.setInt(3, userId);
+                    stmt.setInt(4, score);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            for (Board board : current.values()) {
+                board.submit(new Leaderboard.Entry(userId, username, score));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the best entries of the current window.
+     *
+     * @param window the window
+     * @param count  the maximum number of entries
+     * @return the positions, best first
+     */
+    public List<Leaderboard.Position> getTop(Window window, int count) {
+        Board board = getBoard(window);
+        lock.readLock().lock();
+        try {
+            List<Leaderboard.Position> top = new ArrayList<>(count);
+            for (Leaderboard.Entry entry : board.entries.range(0, count)) {
+                top.add(new Leaderboard.Position(top.size() + 1, entry));
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the position of a user in the current window.
+     *
+     * @param window the window
+     * @param userId the user id
+     * @return the position or null if the user hasn't played in the window
+     */
+    public Leaderboard.Position getPosition(Window window, int userId) {
+        Board board = getBoard(window);
+        lock.readLock().lock();
+        try {
+            Leaderboard.Entry entry = board.entriesByUserId.get(userId);
+            return entry == null ? null : new Leaderboard.Position(board.entries.indexOf(entry) + 1, entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the board of the current window, replacing the board of a window that has ended.
+     * The scores of ended windows are deleted from the db after the new board is in place.
+     */
+    private Board getBoard(Window window) {
+        load();
+        Instant start = window.getStart(clock);
+        lock.readLock().lock();
+        try {
+            Board board = boards.get(window);
+            if (!board.start.isBefore(start)) return board;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Board board;
+        boolean replaced = false;
+        lock.writeLock().lock();
+        try {
+            board = boards.get(window);
+            if (board.start.isBefore(start)) {
+                board = new Board(start);
+                boards.put(window, board);
+                replaced = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (replaced) {
+            db.withConnection(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM `WindowScore` WHERE timeWindow = ? AND windowStart < ?")) {
+                    stmt.setString(1, window.name());
+                    stmt.setTimestamp(2, Timestamp.from(start));
+                    stmt.executeUpdate();
+                }
+            });
+        }
+        return board;
+    }
+
+    /**
+     * Reads the current windows from the db on first use. Concurrent first users may both read them, only the first read is kept.
+     */
+    private void load() {
+        if (loaded) return;
+        Map<Window, Board> read = db.withConnection(conn -> {
+            Map<Window, Board> result = new EnumMap<>(Window.class);
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT User_idUser, username, score FROM `WindowScore` JOIN User ON idUser = User_idUser "
+                    + "WHERE timeWindow = ? AND windowStart = ?")) {
+                for (Window window : Window.values()) {
+                    Board board = new Board(window.getStart(clock));
+                    stmt.setString(1, window.name());
+                    stmt.setTimestamp(2, Timestamp.from(board.start));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            board.submit(new Leaderboard.Entry(rs.getInt("User_idUser"), rs.getString("username"), rs.getInt("score")));
+                        }
+                    }
+                    result.put(window, board);
+                }
+            }
+            return result;
+        });
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            boards.putAll(read);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The best score of every user in one window.
+     */
+    private static class Board {
+        final Instant start;
+        final OrderStatisticTree<Leaderboard.Entry> entries = new OrderStatisticTree<>(Leaderboard.ORDER);
+        final Map<Integer, Leaderboard.Entry> entriesByUserId = new HashMap<>();
+
+        Board(Instant start) {
+            this.start = start;
+        }
+
+        void submit(Leaderboard.Entry entry) {
+            Leaderboard.Entry old = entriesByUserId.get(entry.getUserId());
+            if (old != null) {
+                if (old.getHighScore() >= entry.getHighScore()) return;
+                entries.remove(old);
+            }
+            entries.add(entry);
+            entriesByUserId.put(entry.getUserId(), entry);
+        }
+    }
+}
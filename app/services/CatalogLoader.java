@@ -0,0 +1,76 @@
+package services;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import com.typesafe.config.Config;
+import models.factory.MemoryFactory;
+import models.factory.PizzaRushFactory;
+import play.inject.ApplicationLifecycle;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.ExecutionContextExecutorService;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the Pizza-Rush catalog and the Memory decks when the application starts,
+ * so that the first round doesn't have to wait for them.
+ *
+ * Afterwards it checks the catalog tables for changes on the Play scheduler
+ * (every "catalog.refreshInterval", 60 seconds by default) and reloads the
+ * catalog on its own thread, so new pizzas and ingredients go live without
+ * a restart and without slowing down requests.
+ *
+ * This class is registered as an "eager singleton" in the {@link Module} class.
+ */
+@Singleton
+public class CatalogLoader {
+
+    private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(60);
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger("application");
+
+    private final PizzaRushFactory pizzaRushFactory;
+    private final MemoryFactory memoryFactory;
+
+    @Inject
+    public CatalogLoader(PizzaRushFactory pizzaRushFactory, MemoryFactory memoryFactory, ActorSystem actorSystem, Config config, ApplicationLifecycle appLifecycle) {
+        this.pizzaRushFactory = pizzaRushFactory;
+        this.memoryFactory = memoryFactory;
+
+        PizzaRushFactory.Catalog catalog = pizzaRushFactory.reloadCatalog();
+        memoryFactory.reloadDecks();
+        logger.info("CatalogLoader: Loaded " + catalog.getIngredients().size() + " ingredients and " + catalog.getPizzas().size() + " pizzas");
+
+        Duration refreshInterval = config.hasPath("catalog.refreshInterval")
+                ? config.getDuration("catalog.refreshInterval")
+                : DEFAULT_REFRESH_INTERVAL;
+        ExecutionContextExecutorService executor = ExecutionContext.fromExecutorService(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-refresher");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        Cancellable refresher = actorSystem.scheduler().scheduleAtFixedRate(refreshInterval, refreshInterval, this::refresh, executor);
+
+        appLifecycle.addStopHook(() -> {
+            refresher.cancel();
+            executor.shutdown();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private void refresh() {
+        try {
+            if (pizzaRushFactory.refreshCatalog()) {
+                memoryFactory.reloadDecks();
+                logger.info("CatalogLoader: Catalog changed, now at version " + pizzaRushFactory.getCatalog().getVersion());
+            }
+        } catch (RuntimeException e) {
+            // keep the current catalog and try again with the next refresh
+            logger.error("CatalogLoader: Could not refresh the catalog", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package services;
+
+import akka.actor.ActorRef;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the open chat sockets of every user and pushes new messages to them,
+ * so clients with an open socket don't have to poll for messages.
+ */
+@Singleton
+public class ChatHub {
+
+    private final Map<Integer, Set<ActorRef>> socketsByUserId = new ConcurrentHashMap<>();
+
+    /**
+     * Registers an open socket of a user.
+     *
+     * @param userId the user id
+     * @param socket the actor of the socket
+     */
+    public void register(int userId, ActorRef socket) {
+        // added inside compute, so a concurrent unregister can't drop the set between creating and filling it
+        socketsByUserId.compute(userId, (id, sockets) -> {
+            Set<ActorRef> registered = sockets == null ? ConcurrentHashMap.newKeySet() : sockets;
+            registered.add(socket);
+            return registered;
+        });
+    }
+
+    /**
+     * Removes a closed socket of a user.
+     *
+     * @param userId the user id
+     * @param socket the actor of the socket
+     */
+    public void unregister(int userId, ActorRef socket) {
+        socketsByUserId.computeIfPresent(userId, (id, sockets) -> {
+            sockets.remove(socket);
+            return sockets.isEmpty() ? null : sockets;
+        });
+    }
+
+    /**
+     * Sends a message to every open socket of a user.
+     *
+     * @param userId  the user id
+     * @param message the message as json
+     * @return the number of sockets the message was sent to
+     */
+    public int publish(int userId, JsonNode message) {
+        Set<ActorRef> sockets = socketsByUserId.get(userId);
+        if (sockets == null) return 0;
+        Push push = new Push(message);
+        for (ActorRef socket : sockets) {
+            socket.tell(push, ActorRef.noSender());
+        }
+        return sockets.size();
+    }
+
+    /**
+     * Gets the number of open sockets of a user.
+     *
+     * @param userId the user id
+     * @return the number of sockets
+     */
+    public int getOpenSockets(int userId) {
+        Set<ActorRef> sockets = socketsByUserId.get(userId);
+        return sockets == null ? 0 : sockets.size();
+    }
+
+    /**
+     * A message the socket actor has to write to its client.
+     */
+    public static class Push {
+        private final JsonNode message;
+
+        public Push(JsonNode message) {
+            this.message = message;
+        }
+
+        public JsonNode getMessage() {
+            return message;
+        }
+    }
+}
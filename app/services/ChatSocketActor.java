@@ -0,0 +1,55 @@
+package services;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The actor behind one open chat socket.
+ * It registers itself with the {@link ChatHub} while the socket is open and writes pushed messages to the client.
+ * Anything the client sends is ignored, messages are still sent with a POST to /profile/sendMessage.
+ */
+public class ChatSocketActor extends AbstractActor {
+
+    private final ActorRef out;
+    private final int userId;
+    private final ChatHub chatHub;
+
+    /**
+     * Creates the props of a socket actor.
+     *
+     * @param out     the actor writing to the client
+     * @param userId  the id of the logged in user
+     * @param chatHub the chat hub
+     * @return the props
+     */
+    public static Props props(ActorRef out, int userId, ChatHub chatHub) {
+        return Props.create(ChatSocketActor.class, () -> new ChatSocketActor(out, userId, chatHub));
+    }
+
+    private ChatSocketActor(ActorRef out, int userId, ChatHub chatHub) {
+        this.out = out;
+        this.userId = userId;
+        this.chatHub = chatHub;
+    }
+
+    @Override
+    public void preStart() {
+        chatHub.register(userId, self());
+    }
+
+    @Override
+    public void postStop() {
+        chatHub.unregister(userId, self());
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(ChatHub.Push.class, push -> out.tell(push.getMessage(), self()))
+                .match(JsonNode.class, fromClient -> {
+                })
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package viewmodels;
+
+import models.factory.UserFactory;
+
+import java.util.Map;
+
+/**
+ * The type Profile view model, everything the profile page shows about a user.
+ */
+public class ProfileViewModel {
+
+    private final String username;
+    private final String email;
+    private final int totalPoints;
+    private final int highScore;
+    private final String tierName;
+    private final String profilePicture;
+    private final Map<String, String> friends;
+
+    /**
+     * Instantiates a new Profile view model from a user.
+     *
+     * @param user the user
+     */
+    public ProfileViewModel(UserFactory.User user) {
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.totalPoints = user.getTotalPoints();
+        this.highScore = user.getHighScore();
+        this.tierName = user.getNameFromTierId();
+        this.profilePicture = user.getProfilePictureSrc();
+        this.friends = user.getFriendsData();
+    }
+
+    /**
+     * Gets username.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets email.
+     *
+     * @return the email
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Gets total points.
+     *
+     * @return the total points
+     */
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+
+    /**
+     * Gets high score.
+     *
+     * @return the high score
+     */
+    public int getHighScore() {
+        return highScore;
+    }
+
+    /**
+     * Gets tier name.
+     *
+     * @return the tier name
+     */
+    public String getTierName() {
+        return tierName;
+    }
+
+    /**
+     * Gets profile picture src.
+     *
+     * @return the profile picture src or null if the user has none
+     */
+    public String getProfilePicture() {
+        return profilePicture;
+    }
+
+    /**
+     * Gets friends with their profile picture src by username.
+     *
+     * @return the friends
+     */
+    public Map<String, String> getFriends() {
+        return friends;
+    }
+}
@@ -0,0 +1,31 @@
+-- Counts the changes of the tables the Pizza-Rush catalog and the Memory decks are loaded from.
+-- The CatalogLoader compares the revision with the one of the loaded catalog and reloads it when it moved.
+CREATE TABLE IF NOT EXISTS `CatalogRevision` (
+    revision BIGINT NOT NULL
+);
+
+INSERT INTO `CatalogRevision` (revision) SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM `CatalogRevision`);
+
+CREATE TRIGGER `Ingredient_insert_revision` AFTER INSERT ON `Ingredient` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Ingredient_update_revision` AFTER UPDATE ON `Ingredient` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Ingredient_delete_revision` AFTER DELETE ON `Ingredient` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+
+CREATE TRIGGER `FlightBehavior_insert_revision` AFTER INSERT ON `FlightBehavior` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `FlightBehavior_update_revision` AFTER UPDATE ON `FlightBehavior` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `FlightBehavior_delete_revision` AFTER DELETE ON `FlightBehavior` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+
+CREATE TRIGGER `StampBehavior_insert_revision` AFTER INSERT ON `StampBehavior` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `StampBehavior_update_revision` AFTER UPDATE ON `StampBehavior` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `StampBehavior_delete_revision` AFTER DELETE ON `StampBehavior` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+
+CREATE TRIGGER `Pizza_insert_revision` AFTER INSERT ON `Pizza` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Pizza_update_revision` AFTER UPDATE ON `Pizza` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Pizza_delete_revision` AFTER DELETE ON `Pizza` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+
+CREATE TRIGGER `Pizza_has_Ingredient_insert_revision` AFTER INSERT ON `Pizza_has_Ingredient` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Pizza_has_Ingredient_update_revision` AFTER UPDATE ON `Pizza_has_Ingredient` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Pizza_has_Ingredient_delete_revision` AFTER DELETE ON `Pizza_has_Ingredient` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+
+CREATE TRIGGER `Memory_insert_revision` AFTER INSERT ON `Memory` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Memory_update_revision` AFTER UPDATE ON `Memory` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
+CREATE TRIGGER `Memory_delete_revision` AFTER DELETE ON `Memory` FOR EACH ROW UPDATE `CatalogRevision` SET revision = revision + 1;
@@ -0,0 +1,4 @@
+-- Every message gets an id, messages of the same second are ordered by it.
+ALTER TABLE `Message` ADD COLUMN idMessage INT NOT NULL AUTO_INCREMENT PRIMARY KEY FIRST;
+-- The chat reads each direction of a conversation as one range of (sender, receiver, time, idMessage), newest first.
+CREATE INDEX `Message_sender_receiver_time` ON `Message` (sender, receiver, `time`, idMessage);
@@ -0,0 +1,8 @@
+-- The best score of every user in the current daily and weekly window, read back by WindowedLeaderboards after a restart.
+CREATE TABLE IF NOT EXISTS `WindowScore` (
+    timeWindow  VARCHAR(10) NOT NULL,
+    windowStart TIMESTAMP   NOT NULL,
+    User_idUser INT         NOT NULL,
+    score       INT         NOT NULL,
+    PRIMARY KEY (timeWindow, windowStart, User_idUser)
+);
@@ -1,5 +1,8 @@
 let chatPartner;
 let chatMessages;
+let chatSocket;
+let hasOlderMessages = false;
+let loadingOlderMessages = false;
 
 function setupChatStuff(username) {
     if (username !== chatPartner) {    //nur wenn neuer Name eingegeben wurde, wird gefetcht
@@ -9,9 +12,111 @@ function setupChatStuff(username) {
 }
 
 function getMessagesFromDatabase(username, forceExecution) {  //forceExecution für seltenen bug, bei dem der fetch läuft, währenddessen aber ein neuer Chat geöffnet wird
+    if (username === chatPartner && !forceExecution) {
+        getNewMessagesFromDatabase(username);   //Chat ist schon geladen, nur neue Nachrichten holen
+        return;
+    }
+    fetch("/profile/getMessageHistory", {
+        method: 'POST',
+        body: JSON.stringify({
+            username: username
+        }),
+        headers: {
+            "Content-Type": "application/json"
+        },
+        credentials: 'include'
+    }).then(result => result.json())
+        .then(function (result) {
+            if (forceExecution) {
+                hasOlderMessages = result !== null && result.hasMore;
+                displayChatMessages(result === null ? null : result.messages, username);  //neueste Nachrichten laden
+            }
+        });
+}
+
+//lädt die nächstälteren Nachrichten, wenn ganz nach oben gescrollt wurde
+function loadOlderMessages() {
+    if (!hasOlderMessages || loadingOlderMessages || chatPartner === undefined || chatPartner === null) return;
+    loadingOlderMessages = true;
+    const username = chatPartner;
+
+    //Zeit und id der ältesten Nachricht, gepushte Nachrichten haben noch keine id und sind nie die ältesten
+    let before = null;
+    let beforeId = 0;
+    chatMessages.forEach(function (item) {
+        if (!item.id) return;
+        const time = item.time.substring(0, 19);
+        if (before === null || time < before || (time === before && item.id < beforeId)) {
+            before = time;
+            beforeId = item.id;
+        }
+    });
+
+    fetch("/profile/getMessageHistory", {
+        method: 'POST',
+        body: JSON.stringify({
+            username: username,
+            before: before,
+            beforeId: beforeId
+        }),
+        headers: {
+            "Content-Type": "application/json"
+        },
+        credentials: 'include'
+    }).then(result => result.json())
+        .then(function (result) {
+            loadingOlderMessages = false;
+            if (username !== chatPartner || result === null) return;
+            hasOlderMessages = result.hasMore;
+            chatMessages = result.messages.concat(chatMessages);
+
+            //ältere Nachrichten oben einfügen, ohne dass der Chat springt
+            const chat_div = document.getElementById("chatMessages_div");
+            const oldHeight = chat_div.scrollHeight;
+            const firstMessage = chat_div.firstChild;
+            result.messages.forEach(function (item) {
+                chat_div.insertBefore(createChatMessageElement(item, username), firstMessage);
+            });
+            chat_div.scrollTop = chat_div.scrollHeight - oldHeight;
+        })
+        .catch(function () {
+            loadingOlderMessages = false;
+        });
+}
+
+function createChatMessageElement(item, user2Username) {
+    const container = document.createElement('div');
+
+    const content = document.createElement('p');
+    content.textContent = item.message_text;
+
+    const timeSpan = document.createElement('span');
+    const date = new Date(item.time);
+    timeSpan.textContent = date.toLocaleTimeString() + " " + date.toLocaleDateString();
+
+    if (item.senderName.toLowerCase() === user2Username.toLowerCase()) {  //falls ausgewählter Freund Nachricht gesendet hat
+        container.setAttribute('class', 'container');
+        timeSpan.setAttribute('class', 'time-right');
+    } else {
+        container.setAttribute('class', 'container darker');
+        timeSpan.setAttribute('class', 'time-left');
+    }
+
+    container.appendChild(content);
+    container.appendChild(timeSpan);
+    return container;
+}
+
+//holt nur die Nachrichten des Chatpartners, die neuer als die letzte bekannte sind
+function getNewMessagesFromDatabase(username) {
+    const cursor = getChatCursor(username);
     fetch("/profile/getMessages", {
         method: 'POST',
-        body: JSON.stringify(username),
+        body: JSON.stringify({
+            username: username,
+            since: cursor.since,
+            skip: cursor.skip
+        }),
         headers: {
             "Content-Type": "application/json"
         },
@@ -19,15 +124,28 @@ function getMessagesFromDatabase(username, forceExecution) {  //forceExecution f
     }).then(result => result.json())
         .then(function (result) {
             if (username === chatPartner) {
-                appendRetrievedMessageToChat(result, username); //neue eingetroffene Nachricht appenden
-            } else {
-                if (forceExecution) {
-                    displayChatMessages(result, username);  //gesamten Chat laden
-                }
+                appendRetrievedMessageToChat(result, username); //neue eingetroffene Nachrichten appenden
             }
         });
 }
 
+//Zeit der neuesten Nachricht des Chatpartners und wie viele Nachrichten genau zu dieser Zeit schon da sind
+function getChatCursor(user2Username) {
+    let since = "1970-01-01 00:00:00";
+    let skip = 0;
+    chatMessages.forEach(function (item) {
+        if (item.senderName.toLowerCase() !== user2Username.toLowerCase()) return;
+        const time = item.time.substring(0, 19);  //Nachrichten werden sekundengenau gespeichert
+        if (time > since) {
+            since = time;
+            skip = 1;
+        } else if (time === since) {
+            skip++;
+        }
+    });
+    return {since: since, skip: skip};
+}
+
 function sendMessage(message, time) {
     if (message !== "") {
         document.getElementById("sendMessageInput").value = ""; //Input clearen
@@ -47,7 +165,11 @@ function sendMessage(message, time) {
                 "Content-Type": "application/json"
             },
             credentials: 'include'
-        })
+        }).then(function (result) {
+            if (!result.ok) {
+                alert("Nachricht konnte nicht gesendet werden, bitte nochmal versuchen!");
+            }
+        });
     }
 }
 
@@ -69,12 +191,12 @@ function appendSentMessageToChat(message, time) {
     document.getElementById("chatMessages_div").appendChild(container);
 }
 
-function appendRetrievedMessageToChat(messages, user2Username) {
-    if (messages != null && messages !== 'undefined') {
-        const newMessages = checkIfRetrievedNewMessagesAndReturnThem(messages, user2Username); //gibt Neue retrieved messages zurück
+function appendRetrievedMessageToChat(newMessages, user2Username) {
+    if (newMessages != null && newMessages !== 'undefined') {
+        newMessages = newMessages.filter(item => item.senderName.toLowerCase() === user2Username.toLowerCase());
 
         if (newMessages.length > 0) {      //wenn neue Message eingetroffen ist
-            chatMessages = messages;   //message-Array aktualisieren
+            chatMessages = chatMessages.concat(newMessages);   //message-Array aktualisieren
 
             //Display Messages
             newMessages.forEach(function (item) {
@@ -102,20 +224,42 @@ function appendRetrievedMessageToChat(messages, user2Username) {
     }
 }
 
-function checkIfRetrievedNewMessagesAndReturnThem(messages, user2Username) {
-    const newMessagesRetrieved = [];
-
-    for (let i = chatMessages.length; i < messages.length; i++) {
-        if (messages[i].senderName.toLowerCase() === user2Username.toLowerCase()) {
-            newMessagesRetrieved.push(messages[i]);
+//neue Nachrichten werden über den Socket gepusht, gepollt wird nur, solange er nicht offen ist
+function openChatSocket() {
+    const protocol = location.protocol === "https:" ? "wss://" : "ws://";
+    chatSocket = new WebSocket(protocol + location.host + "/profile/chatSocket");
+    chatSocket.onopen = function () {
+        //Nachrichten, die ohne Socket verpasst wurden, einmal nachladen
+        if (chatPartner !== undefined && chatPartner !== null) {
+            getMessagesFromDatabase(chatPartner, false);
         }
-    }
-    return newMessagesRetrieved;
+    };
+    chatSocket.onmessage = function (event) {
+        const message = JSON.parse(event.data);
+        if (chatPartner !== undefined && chatPartner !== null && chatMessages !== undefined
+            && message.senderName.toLowerCase() === chatPartner.toLowerCase()) {
+            appendRetrievedMessageToChat([message], chatPartner);
+        }
+    };
+    chatSocket.onclose = function () {
+        chatSocket = undefined;
+        window.setTimeout(openChatSocket, 5000);
+    };
+}
+
+function isChatSocketOpen() {
+    return chatSocket !== undefined && chatSocket.readyState === WebSocket.OPEN;
 }
 
 function refreshChat() {
+    openChatSocket();
+    document.getElementById("chatMessages_div").addEventListener("scroll", function () {
+        if (this.scrollTop === 0) {
+            loadOlderMessages();
+        }
+    });
     window.setInterval(function () {
-        if (chatPartner !== undefined && chatPartner !== null && !viewOnly) {
+        if (chatPartner !== undefined && chatPartner !== null && !viewOnly && !isChatSocketOpen()) {
             getMessagesFromDatabase(chatPartner, false);
         }
     }, 2000);
@@ -1,8 +1,12 @@
 let viewOnly = false;           //falls Profil vom Freund angeklickt wird ist dieses Attribut true
 
-function getFriendsData() {
+function showFriendsLoading() {
     document.getElementById("loading_friends").style.display = "block" //loading friends anzeigen
     document.getElementById("container_friends").style.overflowY = "hidden"; //scrollbar hiden, und erst nach der Erstellung der Freundesliste anzeigen
+}
+
+function getFriendsData() {
+    showFriendsLoading();
     fetch("/getFriendsData")
         .then(result => result.json())
         .then(result => createFriendlist(result));
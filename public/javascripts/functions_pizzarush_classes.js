@@ -75,6 +75,14 @@ class AbstractIngredient {
         return ret;
     }
 
+    // loads the pictures that are only needed later in the round into the browser cache
+    prefetchPictures() {
+        [this.picture_processed, this.picture_baked, this.picture_burnt, this.picture_raw_distraction].forEach(function (src) {
+            const image = new Image();
+            image.src = src;
+        });
+    }
+
     getName() {
         return this.name;
     }
@@ -98,6 +98,23 @@ async function loadGameElements() {
     loadIngredientSection();
     loadOvens();
     loadRecipeList();
+
+    prefetchIngredientPictures();
+}
+
+// only "picture_raw" is needed right away, the other pictures are loaded when the browser is idle
+function prefetchIngredientPictures() {
+    const prefetch = function () {
+        availableIngredients.forEach(function (item) {
+            item.prefetchPictures();
+        });
+    };
+
+    if ('requestIdleCallback' in window) {
+        window.requestIdleCallback(prefetch);
+    } else {
+        setTimeout(prefetch, 1000);
+    }
 }
 
 function loadIngredientSection() {
@@ -65,13 +65,7 @@ $(function () {
 function setup() {
     setupButtonOnclicksAndInputs();  //Buttons funktional machen
 
-    getUsernameFromDatabase();
-    getGesamtpunkteFromDatabase();
-    getHighscoreFromDatabase();
-    getMailFromDatabase();
-    getTierFromDatabase();
-    getProfilePicFromDatabase();
-    getFriendsData();
+    getProfileFromDatabase();
 }
 
 function setupButtonOnclicksAndInputs() {
@@ -146,6 +140,42 @@ async function uploadProfilePictureIntoDB(image) {
     )
 }
 
+// Reads the whole profile with one request and updates html
+function getProfileFromDatabase() {
+    showFriendsLoading();
+    $.get("/profile/getProfile", function (data, status) {
+        showProfile(data);
+    }).fail(function (data, status) {
+        document.getElementById("username").textContent = "Default Name";
+        alert("Couldn't retrieve profile from database");
+    });
+}
+
+function friendGetProfileFromDatabase(username) {
+    showFriendsLoading();
+    fetch("/profile/getProfile/" + encodeURIComponent(username), {
+        credentials: 'include'
+    }).then(result => {
+        if (!result.ok) throw new Error(result.status);
+        return result.json();
+    })
+        .then(result => showProfile(result))
+        .catch((error) => {
+            alert("Couldn't retrieve profile from database");
+            console.error('Error:', error);
+        });
+}
+
+function showProfile(profile) {
+    document.getElementById("username").textContent = profile.username;
+    document.getElementById("mail").textContent = "Email: " + profile.email;
+    document.getElementById("gesamtpunkte").textContent = "Gesamtpunkte: " + profile.totalPoints;
+    document.getElementById("highscore").textContent = "Highscore: " + profile.highScore;
+    document.getElementById("tier").textContent = "Rang: " + profile.tierName;
+    setFriendsProfilePic(profile.profilePicture);
+    createFriendlist(profile.friends);
+}
+
 // Reads username from Database and updates html
 function getUsernameFromDatabase() {
     $.get("/getUsername", function (data, status) {
@@ -210,16 +240,8 @@ function setupInformationFromFriend(elm) {
     } else if (!viewOnly) {        //Funktion wird nur ausgeführt, wenn man auf dem eigenen Profil ist
         const name = elm.childNodes[1].innerHTML;  //childnodes[1] gibt das "name" child von friend
 
-        friendGetUsernameFromDatabase(name);
-        friendGetGesamtpunkteFromDatabase(name);
-        friendGetHighscoreFromDatabase(name);
-        friendGetMailFromDatabase(name);
-        friendGetTierFromDatabase(name);
-        friendGetProfilePicFromDatabase(name);
-
-
         deleteOldFriendList();          //Liste wird gelöscht, damit nur neue angezeigt wird
-        friendGetFriendsData(name);
+        friendGetProfileFromDatabase(name);
 
         hideSensibleStuff();
 
@@ -0,0 +1,89 @@
+package ControllerTests;
+
+import akka.actor.ActorSystem;
+import akka.stream.Materializer;
+import controllers.ChatController;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.F;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.Helpers;
+import services.ChatHub;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static play.mvc.Http.Status.FORBIDDEN;
+
+public class ChatControllerTest {
+
+    private static final String VALID_EMAIL = "anna@pizza.it";
+
+    private ActorSystem actorSystem;
+    private ChatController chatController;
+
+    @Before
+    public void setUp() {
+        UserFactory mockedUserFactory = mock(UserFactory.class);
+        UserFactory.User mockedUser = mock(UserFactory.User.class);
+        when(mockedUser.getId()).thenReturn(1);
+        when(mockedUserFactory.getUserByEmail(VALID_EMAIL)).thenReturn(mockedUser);
+        actorSystem = ActorSystem.create("chatController");
+        chatController = new ChatController(mockedUserFactory, new ChatHub(), actorSystem, Materializer.matFromSystem(actorSystem));
+    }
+
+    @After
+    public void shutdownActorSystem() {
+        actorSystem.terminate();
+    }
+
+    @Test
+    public void testChatSocket_whenOtherOrigin_thenForbidden() throws ExecutionException, InterruptedException {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().host("localhost")
+                .header(Http.HeaderNames.ORIGIN, "http://evil.example").session("email", VALID_EMAIL);
+
+        assertRejected(requestBuilder);
+    }
+
+    @Test
+    public void testChatSocket_whenNoOrigin_thenForbidden() throws ExecutionException, InterruptedException {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().host("localhost").session("email", VALID_EMAIL);
+
+        assertRejected(requestBuilder);
+    }
+
+    @Test
+    public void testChatSocket_whenNoSession_thenForbidden() throws ExecutionException, InterruptedException {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().host("localhost")
+                .header(Http.HeaderNames.ORIGIN, "http://localhost");
+
+        assertRejected(requestBuilder);
+    }
+
+    @Test
+    public void testChatSocket_whenUnknownUser_thenForbidden() throws ExecutionException, InterruptedException {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().host("localhost")
+                .header(Http.HeaderNames.ORIGIN, "http://localhost").session("email", "nobody@pizza.it");
+
+        assertRejected(requestBuilder);
+    }
+
+    @Test
+    public void testChatSocket_whenSameOriginAndSession_thenAccepted() throws ExecutionException, InterruptedException {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().host("localhost")
+                .header(Http.HeaderNames.ORIGIN, "http://localhost").session("email", VALID_EMAIL);
+
+        assertNotNull(chatController.chatSocket().apply(requestBuilder.build()).toCompletableFuture().get().right.orElse(null));
+    }
+
+    private void assertRejected(Http.RequestBuilder requestBuilder) throws ExecutionException, InterruptedException {
+        F.Either<Result, ?> socket = chatController.chatSocket().apply(requestBuilder.build()).toCompletableFuture().get();
+
+        assertFalse(socket.right.isPresent());
+        assertEquals(FORBIDDEN, socket.left.get().status());
+    }
+}
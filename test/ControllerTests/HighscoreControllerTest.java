@@ -1,7 +1,9 @@
 package ControllerTests;
 
 import controllers.HighscoreController;
+import models.factory.Leaderboard;
 import models.factory.UserFactory;
+import models.factory.WindowedLeaderboards;
 import org.junit.Before;
 import org.junit.Test;
 import play.mvc.Result;
@@ -16,7 +18,9 @@ public class HighscoreControllerTest extends WithApplication {
 
     @Before
     public void provideHighscoreController() {
-        this.highscoreController = new HighscoreController(provideApplication().injector().instanceOf(UserFactory.class));
+        this.highscoreController = new HighscoreController(provideApplication().injector().instanceOf(UserFactory.class),
+                provideApplication().injector().instanceOf(Leaderboard.class),
+                provideApplication().injector().instanceOf(WindowedLeaderboards.class));
     }
 
     @Test
@@ -0,0 +1,57 @@
+package ControllerTests;
+
+import controllers.ImageController;
+import models.factory.ImageStore;
+import org.junit.Before;
+import org.junit.Test;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.Helpers;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.mvc.Http.Status.*;
+
+public class ImageControllerTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 0};
+
+    private ImageController imageController;
+    private String hash;
+
+    @Before
+    public void provideImageController() {
+        ImageStore imageStore = new ImageStore(Duration.ofMinutes(1));
+        imageStore.replace("test", Collections.singletonList(PNG));
+        hash = ImageStore.getHash(PNG);
+        imageController = new ImageController(imageStore);
+    }
+
+    @Test
+    public void testGetImage_thenImmutable() {
+        Result result = imageController.getImage(hash, Helpers.fakeRequest().build());
+
+        assertEquals(OK, result.status());
+        assertEquals("image/png", result.contentType().get());
+        assertEquals("\"" + hash + "\"", result.headers().get(Http.HeaderNames.ETAG));
+        assertTrue(result.headers().get(Http.HeaderNames.CACHE_CONTROL).contains("immutable"));
+    }
+
+    @Test
+    public void testGetImage_whenEtagMatches_thenNotModified() {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().header(Http.HeaderNames.IF_NONE_MATCH, "\"" + hash + "\"");
+        Result result = imageController.getImage(hash, requestBuilder.build());
+
+        assertEquals(NOT_MODIFIED, result.status());
+    }
+
+    @Test
+    public void testGetImage_whenUnknownHash_thenNotFound() {
+        Result result = imageController.getImage("unknown", Helpers.fakeRequest().build());
+
+        assertEquals(NOT_FOUND, result.status());
+    }
+}
@@ -0,0 +1,98 @@
+package ControllerTests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import controllers.ProfileController;
+import models.factory.UserFactory;
+import org.junit.Before;
+import org.junit.Test;
+import play.data.FormFactory;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.Helpers;
+import services.ChatHub;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import static play.mvc.Http.Status.*;
+import static play.test.Helpers.contentAsString;
+
+public class ProfileControllerTest {
+
+    private static final String VALID_EMAIL = "anna@pizza.it";
+
+    private ProfileController profileController;
+
+    @Before
+    public void setUp() {
+        UserFactory mockedUserFactory = mock(UserFactory.class);
+        UserFactory.User anna = mockUser("anna", VALID_EMAIL);
+        UserFactory.User bert = mockUser("bert", "bert@pizza.it");
+        UserFactory.User carl = mockUser("carl", "carl@pizza.it");
+        when(anna.isFriend(bert)).thenReturn(true);
+        when(mockedUserFactory.getUserByEmail(VALID_EMAIL)).thenReturn(anna);
+        when(mockedUserFactory.getUserByUsername("bert")).thenReturn(bert);
+        when(mockedUserFactory.getUserByUsername("carl")).thenReturn(carl);
+
+        profileController = new ProfileController(mock(FormFactory.class), mockedUserFactory, new ChatHub());
+    }
+
+    @Test
+    public void testGetProfile_thenOwnProfile() {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().session("email", VALID_EMAIL);
+        Result result = profileController.getProfile(requestBuilder.build());
+
+        assertEquals(OK, result.status());
+        JsonNode profile = Json.parse(contentAsString(result));
+        assertEquals("anna", profile.get("username").asText());
+        assertEquals(VALID_EMAIL, profile.get("email").asText());
+        assertEquals(1200, profile.get("totalPoints").asInt());
+        assertEquals("Tier 2", profile.get("tierName").asText());
+    }
+
+    @Test
+    public void testGetFriendProfile_whenFriend_thenProfile() {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().session("email", VALID_EMAIL);
+        Result result = profileController.getFriendProfile(requestBuilder.build(), "bert");
+
+        assertEquals(OK, result.status());
+        assertEquals("bert", Json.parse(contentAsString(result)).get("username").asText());
+    }
+
+    @Test
+    public void testGetFriendProfile_whenNotFriend_thenForbidden() {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().session("email", VALID_EMAIL);
+        Result result = profileController.getFriendProfile(requestBuilder.build(), "carl");
+
+        assertEquals(FORBIDDEN, result.status());
+    }
+
+    @Test
+    public void testGetFriendProfile_whenUnknownUser_thenNotFound() {
+        Http.RequestBuilder requestBuilder = Helpers.fakeRequest().session("email", VALID_EMAIL);
+        Result result = profileController.getFriendProfile(requestBuilder.build(), "nobody");
+
+        assertEquals(NOT_FOUND, result.status());
+    }
+
+    @Test
+    public void testGetFriendProfile_whenNoSession_thenUnauthorized() {
+        Result result = profileController.getFriendProfile(Helpers.fakeRequest().build(), "bert");
+
+        assertEquals(UNAUTHORIZED, result.status());
+    }
+
+    private UserFactory.User mockUser(String username, String email) {
+        UserFactory.User user = mock(UserFactory.User.class);
+        when(user.getUsername()).thenReturn(username);
+        when(user.getEmail()).thenReturn(email);
+        when(user.getTotalPoints()).thenReturn(1200);
+        when(user.getHighScore()).thenReturn(300);
+        when(user.getNameFromTierId()).thenReturn("Tier 2");
+        when(user.getProfilePictureSrc()).thenReturn("/assets/images/profile_default.png");
+        when(user.getFriendsData()).thenReturn(Collections.emptyMap());
+        return user;
+    }
+}
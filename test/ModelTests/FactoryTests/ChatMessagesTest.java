@@ -0,0 +1,264 @@
+package ModelTests.FactoryTests;
+
+import ModelTests.UserFactoryFixture;
+import com.google.common.collect.ImmutableMap;
+import models.Message;
+import models.factory.FriendGraph;
+import models.factory.Leaderboard;
+import models.factory.MessageQueue;
+import models.factory.TierTable;
+import models.factory.UserCache;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.Database;
+import play.db.Databases;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ChatMessagesTest {
+
+    private Database database;
+    private Database countingDatabase;
+    private UserFactoryFixture fixture;
+    private MessageQueue messageQueue;
+    private UserFactory userFactory;
+
+    @Before
+    public void setupDatabase() throws SQLException {
+        database = Databases.inMemory(
+                "chat",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `User` (idUser INT PRIMARY KEY, username VARCHAR(45), email VARCHAR(45), password VARCHAR(45), "
+                    + "gesamtpunkte INT, highscore INT, profilepicture BLOB, Tier_idTier INT)");
+            conn.createStatement().execute("CREATE TABLE `Friendship` (User_idUser_one INT, User_idUser_two INT, PRIMARY KEY (User_idUser_one, User_idUser_two))");
+            conn.createStatement().execute("CREATE TABLE `Message` (idMessage INT AUTO_INCREMENT PRIMARY KEY, sender INT, receiver INT, `time` TIMESTAMP, message_text VARCHAR(255))");
+            conn.createStatement().execute("CREATE INDEX `Message_sender_receiver_time` ON `Message` (sender, receiver, `time`, idMessage)");
+            conn.createStatement().execute("INSERT INTO `User` VALUES (1, 'anna', 'anna@pizza.it', 'secret', 0, 0, NULL, 1), "
+                    + "(2, 'bert', 'bert@pizza.it', 'secret', 0, 0, NULL, 1), (3, 'carl', 'carl@pizza.it', 'secret', 0, 0, NULL, 1)");
+            conn.createStatement().execute("INSERT INTO `Friendship` VALUES (1, 2)");
+        }
+
+        countingDatabase = Mockito.spy(database);
+        // a small buffer, so conversations outgrow it
+        fixture = new UserFactoryFixture(countingDatabase, new UserCache(100, Duration.ofMinutes(1)),
+                new Leaderboard(countingDatabase), new FriendGraph(countingDatabase), new TierTable(countingDatabase), 5);
+        messageQueue = fixture.messageQueue;
+        userFactory = fixture.userFactory;
+    }
+
+    @After
+    public void shutdownDatabase() {
+        fixture.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testGetMessagesSince_thenOnlyNewerMessagesOfThePartner() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:00"), "old");
+        anna.sendMessage(2, Timestamp.valueOf("2021-01-01 12:00:05"), "own");
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:10"), "new");
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+
+        List<Message> messages = anna.getMessagesSince(bert, Timestamp.valueOf("2021-01-01 12:00:00"), 1);
+
+        assertEquals(1, messages.size());
+        assertEquals("new", messages.get(0).getMessage_text());
+        assertEquals("bert", messages.get(0).getSenderName());
+        assertEquals("anna", messages.get(0).getReceiverName());
+    }
+
+    @Test
+    public void testGetMessagesSince_whenSameSecond_thenSkipsOnlyKnownMessages() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:00"), "first");
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:00"), "second");
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+
+        assertEquals(1, anna.getMessagesSince(bert, Timestamp.valueOf("2021-01-01 12:00:00"), 1).size());
+        assertTrue(anna.getMessagesSince(bert, Timestamp.valueOf("2021-01-01 12:00:00"), 2).isEmpty());
+    }
+
+    @Test
+    public void testGetMessagesSince_whenNotFriends_thenNull() {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User carl = userFactory.getUserById(3);
+
+        assertNull(anna.getMessagesSince(carl, Timestamp.valueOf("2021-01-01 12:00:00"), 0));
+    }
+
+    @Test
+    public void testGetMessageHistory_thenNewestPageInChronologicalOrder() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        for (int second = 0; second < 10; second++) {
+            UserFactory.User sender = second % 2 == 0 ? anna : bert;
+            sender.sendMessage(sender == anna ? 2 : 1, Timestamp.valueOf("2021-01-01 12:00:0" + second), "m" + second);
+        }
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+
+        List<Message> page = anna.getMessageHistory(bert, null, 0, 4);
+
+        assertEquals(4, page.size());
+        assertEquals("m6", page.get(0).getMessage_text());
+        assertEquals("m9", page.get(3).getMessage_text());
+        assertEquals("bert", page.get(3).getSenderName());
+    }
+
+    @Test
+    public void testGetMessageHistory_whenPagingBack_thenEveryMessageOnce() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        // five messages share every second, so pages end in the middle of a second
+        for (int i = 0; i < 20; i++) {
+            UserFactory.User sender = i % 2 == 0 ? anna : bert;
+            sender.sendMessage(sender == anna ? 2 : 1, Timestamp.valueOf("2021-01-01 12:00:0" + i / 5), "m" + (i < 10 ? "0" : "") + i);
+        }
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+
+        Set<String> seen = new HashSet<>();
+        List<Message> page = anna.getMessageHistory(bert, null, 0, 3);
+        while (!page.isEmpty()) {
+            for (Message message : page) assertTrue(seen.add(message.getMessage_text()));
+            page = anna.getMessageHistory(bert, Timestamp.valueOf(page.get(0).getTime()), page.get(0).getId(), 3);
+        }
+
+        assertEquals(20, seen.size());
+    }
+
+    @Test
+    public void testGetMessageHistory_whenTextsDifferInCase_thenEveryMessageOnce() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        // more messages than the buffer holds, so the older pages come from the db
+        for (String text : new String[]{"a", "B", "c", "D", "e", "F", "g", "H"}) {
+            bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:00"), text);
+        }
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+
+        List<String> texts = new ArrayList<>();
+        List<Message> page = anna.getMessageHistory(bert, null, 0, 1);
+        while (!page.isEmpty()) {
+            texts.add(0, page.get(0).getMessage_text());
+            page = anna.getMessageHistory(bert, Timestamp.valueOf(page.get(0).getTime()), page.get(0).getId(), 1);
+        }
+
+        assertEquals(Arrays.asList("a", "B", "c", "D", "e", "F", "g", "H"), texts);
+    }
+
+    @Test
+    public void testGetMessageHistory_whenNotFriends_thenNull() {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User carl = userFactory.getUserById(3);
+
+        assertNull(anna.getMessageHistory(carl, null, 0, 10));
+    }
+
+    @Test
+    public void testGetMessagesSince_whenConversationBuffered_thenNoQuery() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:00"), "old");
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+        anna.getMessageHistory(bert, null, 0, 5);
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:10"), "new");
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+        clearInvocations(countingDatabase);
+
+        List<Message> messages = anna.getMessagesSince(bert, Timestamp.valueOf("2021-01-01 12:00:00"), 1);
+        List<Message> page = anna.getMessageHistory(bert, null, 0, 5);
+
+        assertEquals(1, messages.size());
+        assertEquals("new", messages.get(0).getMessage_text());
+        assertEquals("bert", messages.get(0).getSenderName());
+        assertEquals(2, page.size());
+        verify(countingDatabase, never()).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetMessageHistory_whenOlderThanBuffer_thenReadFromDb() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        for (int second = 0; second < 10; second++) {
+            bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:0" + second), "m" + second);
+        }
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+        List<Message> newest = anna.getMessageHistory(bert, null, 0, 3);
+        clearInvocations(countingDatabase);
+
+        List<Message> buffered = anna.getMessageHistory(bert, Timestamp.valueOf(newest.get(0).getTime()), newest.get(0).getId(), 1);
+        verify(countingDatabase, never()).withConnection((ConnectionCallable<?>) any());
+        List<Message> older = anna.getMessageHistory(bert, Timestamp.valueOf(buffered.get(0).getTime()), buffered.get(0).getId(), 3);
+
+        assertEquals("m7", newest.get(0).getMessage_text());
+        assertEquals("m6", buffered.get(0).getMessage_text());
+        assertEquals(3, older.size());
+        assertEquals("m3", older.get(0).getMessage_text());
+        assertEquals("m5", older.get(2).getMessage_text());
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetMessageHistory_whenReadFails_thenConversationNotLeftLoading() {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        doThrow(new RuntimeException("connection lost")).when(countingDatabase).withConnection((ConnectionCallable<?>) any());
+
+        assertThrows(RuntimeException.class, () -> anna.getMessageHistory(bert, null, 0, 5));
+
+        assertEquals(0, fixture.recentMessages.size());
+    }
+
+    @Test
+    public void testGetMessages_whenConversationFitsBuffer_thenNoQuery() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        anna.sendMessage(2, Timestamp.valueOf("2021-01-01 12:00:00"), "hi");
+        bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:05"), "hello");
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+        anna.getMessages(bert);
+        clearInvocations(countingDatabase);
+
+        List<Message> messages = anna.getMessages(bert);
+
+        assertEquals(2, messages.size());
+        assertEquals("hi", messages.get(0).getMessage_text());
+        assertEquals("bert", messages.get(1).getSenderName());
+        verify(countingDatabase, never()).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetMessages_whenLongerThanBuffer_thenWholeConversationFromDb() throws InterruptedException {
+        UserFactory.User anna = userFactory.getUserById(1);
+        UserFactory.User bert = userFactory.getUserById(2);
+        for (int second = 0; second < 8; second++) {
+            bert.sendMessage(1, Timestamp.valueOf("2021-01-01 12:00:0" + second), "m" + second);
+        }
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+
+        List<Message> messages = anna.getMessages(bert);
+
+        assertEquals(8, messages.size());
+        assertEquals("m0", messages.get(0).getMessage_text());
+        assertEquals("m7", messages.get(7).getMessage_text());
+    }
+}
@@ -0,0 +1,177 @@
+package ModelTests.FactoryTests;
+
+import ModelTests.UserFactoryFixture;
+import com.google.common.collect.ImmutableMap;
+import models.factory.FriendGraph;
+import models.factory.Leaderboard;
+import models.factory.TierTable;
+import models.factory.UserCache;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.ConnectionRunnable;
+import play.db.Database;
+import play.db.Databases;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class FriendGraphTest {
+
+    private static final int FRIENDS = 50;
+
+    private Database database;
+    private Database countingDatabase;
+    private FriendGraph friendGraph;
+    private UserFactoryFixture fixture;
+    private UserFactory userFactory;
+
+    @Before
+    public void setupDatabase() throws SQLException {
+        database = Databases.inMemory(
+                "friends",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `User` (idUser INT PRIMARY KEY, username VARCHAR(45), email VARCHAR(45), password VARCHAR(45), "
+                    + "gesamtpunkte INT, highscore INT, profilepicture BLOB, Tier_idTier INT)");
+            conn.createStatement().execute("CREATE TABLE `Friendship` (User_idUser_one INT, User_idUser_two INT, PRIMARY KEY (User_idUser_one, User_idUser_two))");
+            PreparedStatement user = conn.prepareStatement("INSERT INTO `User` VALUES (?, ?, ?, 'secret', 0, 0, NULL, 1)");
+            PreparedStatement friendship = conn.prepareStatement("INSERT INTO `Friendship` VALUES (?, ?)");
+            for (int id = 1; id <= FRIENDS + 2; id++) {
+                user.setInt(1, id);
+                user.setString(2, "user" + id);
+                user.setString(3, "user" + id + "@pizza.it");
+                user.executeUpdate();
+                if (id > 1 && id <= FRIENDS + 1) {
+                    // half of the friendships were saved from the other side
+                    friendship.setInt(1, id % 2 == 0 ? 1 : id);
+                    friendship.setInt(2, id % 2 == 0 ? id : 1);
+                    friendship.executeUpdate();
+                }
+            }
+        }
+
+        countingDatabase = Mockito.spy(database);
+        friendGraph = new FriendGraph(countingDatabase);
+        fixture = new UserFactoryFixture(countingDatabase, new UserCache(100, Duration.ofMinutes(1)), new Leaderboard(countingDatabase), friendGraph, new TierTable(countingDatabase), 100);
+        userFactory = fixture.userFactory;
+    }
+
+    @After
+    public void shutdownDatabase() {
+        fixture.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testGetFriends_thenOneQueryForAllFriends() {
+        UserFactory.User user = userFactory.getUserById(1);
+
+        List<UserFactory.User> friends = user.getFriends();
+
+        assertEquals(FRIENDS, friends.size());
+        assertEquals(2, friends.get(0).getId());
+        // the user, the friendships and the friends
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+        verify(countingDatabase, times(2)).withConnection((ConnectionRunnable) any());
+    }
+
+    @Test
+    public void testGetFriends_whenCalledAgain_thenServedFromMemory() {
+        UserFactory.User user = userFactory.getUserById(1);
+        user.getFriends();
+
+        user.getFriends();
+
+        verify(countingDatabase, times(2)).withConnection((ConnectionRunnable) any());
+    }
+
+    @Test
+    public void testGetFriendsData_thenPicturesLoadedWithOneQuery() {
+        UserFactory.User user = userFactory.getUserById(1);
+
+        Map<String, String> data = user.getFriendsData();
+
+        assertEquals(FRIENDS, data.size());
+        assertTrue(data.containsKey("user2"));
+        assertNull(data.get("user2"));
+        verify(countingDatabase, times(3)).withConnection((ConnectionRunnable) any());
+    }
+
+    @Test
+    public void testGetFriendIds_thenBothDirectionsSortedWithoutDuplicates() {
+        friendGraph.getFriendIds(1);
+        friendGraph.addFriendship(2, 1);
+
+        int[] friendIds = friendGraph.getFriendIds(1);
+
+        assertEquals(FRIENDS, friendIds.length);
+        for (int i = 0; i < FRIENDS; i++) assertEquals(i + 2, friendIds[i]);
+        assertArrayEquals(new int[]{1}, friendGraph.getFriendIds(3));
+        assertEquals(0, friendGraph.getFriendIds(FRIENDS + 2).length);
+    }
+
+    @Test
+    public void testAddFriendshipAndRemoveUser_thenAdjacencyUpdated() {
+        friendGraph.getFriendIds(1);
+        friendGraph.addFriendship(FRIENDS + 2, 3);
+
+        assertTrue(friendGraph.areFriends(3, FRIENDS + 2));
+        assertArrayEquals(new int[]{1, FRIENDS + 2}, friendGraph.getFriendIds(3));
+
+        friendGraph.removeUser(1);
+
+        assertFalse(friendGraph.areFriends(3, 1));
+        assertArrayEquals(new int[]{FRIENDS + 2}, friendGraph.getFriendIds(3));
+        assertEquals(0, friendGraph.getFriendIds(1).length);
+    }
+
+    @Test
+    public void testAddFriend_thenCheckedWithoutLoadingUsers() {
+        UserFactory.User user = userFactory.getUserById(FRIENDS + 2);
+
+        assertTrue(user.addFriend(2));
+        assertFalse(user.addFriend(2));
+        assertFalse(userFactory.getUserById(2).addFriend(FRIENDS + 2));
+        assertFalse(user.addFriend(FRIENDS + 3));
+
+        assertTrue(friendGraph.areFriends(2, FRIENDS + 2));
+        // the users 52, 2 and 53 and one insert, then the friendships
+        verify(countingDatabase, times(4)).withConnection((ConnectionCallable<?>) any());
+        verify(countingDatabase, times(1)).withConnection((ConnectionRunnable) any());
+    }
+
+    @Test
+    public void testAddFriend_whenBothAddEachOtherAtOnce_thenOneRow() throws SQLException {
+        UserFactory.User user = userFactory.getUserById(FRIENDS + 2);
+        friendGraph.getFriendIds(user.getId());
+        // the other user's request got past the graph check and saved the friendship first
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("INSERT INTO `Friendship` VALUES (3, " + (FRIENDS + 2) + ")");
+        }
+
+        assertFalse(user.addFriend(3));
+        assertEquals(1, countFriendships(3, FRIENDS + 2));
+    }
+
+    private int countFriendships(int userA, int userB) throws SQLException {
+        try (Connection conn = database.getConnection();
+             ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM `Friendship` WHERE (User_idUser_one = " + userA
+                     + " AND User_idUser_two = " + userB + ") OR (User_idUser_one = " + userB + " AND User_idUser_two = " + userA + ")")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ModelTests.FactoryTests;
+
+import models.factory.ImageCodec;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class ImageCodecTest {
+
+    private ImageCodec imageCodec;
+    private byte[] picture;
+
+    @Before
+    public void setUp() throws IOException {
+        imageCodec = new ImageCodec(1024 * 1024);
+        picture = createPicture(8);
+    }
+
+    @Test
+    public void testEncode_thenDataUri() {
+        String actual = imageCodec.encode(picture);
+
+        assertEquals("data:image/png;base64," + Base64.getEncoder().encodeToString(picture), actual);
+    }
+
+    @Test
+    public void testEncode_whenSameContent_thenCached() {
+        String first = imageCodec.encode(picture);
+        String second = imageCodec.encode(picture.clone());
+
+        assertSame(first, second);
+        assertEquals(1, imageCodec.getMisses());
+        assertEquals(1, imageCodec.getHits());
+        assertEquals(first.length(), imageCodec.getBytesSaved());
+    }
+
+    @Test
+    public void testEncode_whenCacheFull_thenEldestEvicted() throws IOException {
+        String encoded = imageCodec.encode(picture);
+        imageCodec = new ImageCodec(encoded.length() + 1);
+
+        imageCodec.encode(picture);
+        imageCodec.encode(createPicture(9));
+        imageCodec.encode(picture);
+
+        assertEquals(3, imageCodec.getMisses());
+        assertTrue(imageCodec.getCacheBytes() <= encoded.length() + 1);
+    }
+
+    private byte[] createPicture(int size) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB), "png", bos);
+        return bos.toByteArray();
+    }
+}
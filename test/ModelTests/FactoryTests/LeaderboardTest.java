@@ -0,0 +1,192 @@
+package ModelTests.FactoryTests;
+
+import ModelTests.UserFactoryFixture;
+import com.google.common.collect.ImmutableMap;
+import models.factory.FriendGraph;
+import models.factory.Leaderboard;
+import models.factory.TierTable;
+import models.factory.UserCache;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.ConnectionRunnable;
+import play.db.Database;
+import play.db.Databases;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LeaderboardTest {
+
+    private static final int USERS = 30;
+
+    private Database database;
+    private Database countingDatabase;
+    private Leaderboard leaderboard;
+    private UserFactoryFixture fixture;
+    private UserFactory userFactory;
+
+    @Before
+    public void setupDatabase() throws SQLException {
+        database = Databases.inMemory(
+                "leaderboard",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `User` (idUser INT PRIMARY KEY, username VARCHAR(45), email VARCHAR(45), password VARCHAR(45), "
+                    + "gesamtpunkte INT, highscore INT, profilepicture BLOB, Tier_idTier INT)");
+            PreparedStatement stmt = conn.prepareStatement("INSERT INTO `User` VALUES (?, ?, ?, 'secret', 0, ?, NULL, 1)");
+            for (int id = 1; id <= USERS; id++) {
+                stmt.setInt(1, id);
+                stmt.setString(2, "user" + id);
+                stmt.setString(3, "user" + id + "@pizza.it");
+                // user 1 and 2 share a highscore, user 30 has none
+                stmt.setInt(4, id <= 2 ? 100 : (USERS - id) * 2);
+                stmt.executeUpdate();
+            }
+            // user 10 is friends with 3, 20 and 30
+            conn.createStatement().execute("CREATE TABLE `Friendship` (User_idUser_one INT, User_idUser_two INT)");
+            conn.createStatement().execute("INSERT INTO `Friendship` VALUES (10, 3), (20, 10), (10, 30), (4, 5)");
+        }
+
+        countingDatabase = Mockito.spy(database);
+        leaderboard = new Leaderboard(countingDatabase);
+        fixture = new UserFactoryFixture(countingDatabase, new UserCache(100, Duration.ofMinutes(1)), leaderboard, new FriendGraph(countingDatabase), new TierTable(countingDatabase), 100);
+        userFactory = fixture.userFactory;
+    }
+
+    @After
+    public void shutdownDatabase() {
+        fixture.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testGetHighscoreData_thenTopTenOrderedByHighscoreThenId() {
+        List<String[]> data = userFactory.getHighscoreData();
+
+        assertEquals(10, data.size());
+        assertArrayEquals(new String[]{"user1", "100"}, data.get(0));
+        assertArrayEquals(new String[]{"user2", "100"}, data.get(1));
+        assertArrayEquals(new String[]{"user3", "54"}, data.get(2));
+    }
+
+    @Test
+    public void testGetHighscoreData_thenLoadedOnce() {
+        userFactory.getHighscoreData();
+        userFactory.getHighscoreData();
+
+        verify(countingDatabase, times(1)).withConnection((ConnectionRunnable) any());
+    }
+
+    @Test
+    public void testSetHighScore_thenLeaderboardUpdatedWithoutReload() {
+        userFactory.getHighscoreData();
+        UserFactory.User user = userFactory.getUserById(30);
+
+        user.setHighScore(500);
+
+        assertArrayEquals(new String[]{"user30", "500"}, userFactory.getHighscoreData().get(0));
+        // the leaderboard load and the update, and the lookup of the user
+        verify(countingDatabase, times(2)).withConnection((ConnectionRunnable) any());
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetTop_thenUsersWithoutHighscoreLeftOut() {
+        List<Leaderboard.Entry> top = leaderboard.getTop(USERS);
+
+        assertEquals(USERS - 1, top.size());
+    }
+
+    @Test
+    public void testRemove_thenNotListed() {
+        leaderboard.getTop(1);
+
+        leaderboard.remove(1);
+
+        assertEquals("user2", leaderboard.getTop(1).get(0).getUsername());
+    }
+
+    @Test
+    public void testGetPosition_thenTiesOrderedById() {
+        assertEquals(1, leaderboard.getPosition(1).getRank());
+        assertEquals(2, leaderboard.getPosition(2).getRank());
+        assertEquals(3, leaderboard.getPosition(3).getRank());
+        assertEquals(USERS, leaderboard.getPosition(USERS).getRank());
+        assertNull(leaderboard.getPosition(USERS + 1));
+    }
+
+    @Test
+    public void testGetPage_thenRanksContinueAcrossPages() {
+        List<Leaderboard.Position> page = leaderboard.getPage(2, 7);
+
+        assertEquals(7, page.size());
+        assertEquals(8, page.get(0).getRank());
+        assertEquals("user8", page.get(0).getUsername());
+        assertEquals(2, leaderboard.getPage(5, 7).size());
+        assertTrue(leaderboard.getPage(6, 7).isEmpty());
+    }
+
+    @Test
+    public void testUpdate_thenRanksMatchSortedScores() {
+        leaderboard.getTop(1);
+        Random random = new Random(42);
+        int[] scores = new int[USERS + 1];
+        for (int id = 1; id <= USERS; id++) scores[id] = leaderboard.getPosition(id).getHighScore();
+
+        for (int i = 0; i < 1000; i++) {
+            int id = 1 + random.nextInt(USERS);
+            scores[id] = random.nextInt(20);
+            leaderboard.update(id, "user" + id, scores[id]);
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 1; id <= USERS; id++) expected.add(id);
+        expected.sort(Comparator.<Integer>comparingInt(id -> scores[id]).reversed().thenComparingInt(id -> id));
+        for (int rank = 1; rank <= USERS; rank++) {
+            int id = expected.get(rank - 1);
+            assertEquals(rank, leaderboard.getPosition(id).getRank());
+            assertEquals(id, leaderboard.getPage(rank, 1).get(0).getUserId());
+        }
+        assertEquals(USERS, leaderboard.getSize());
+    }
+
+    @Test
+    public void testGetFriendsLeaderboard_thenRankedAmongFriends() {
+        UserFactory.User user = userFactory.getUserById(10);
+
+        List<Leaderboard.Position> board = user.getFriendsLeaderboard();
+
+        assertEquals(4, board.size());
+        assertEquals("user3", board.get(0).getUsername());
+        assertEquals("user10", board.get(1).getUsername());
+        assertEquals(2, board.get(1).getRank());
+        assertEquals("user30", board.get(3).getUsername());
+        // the user, the leaderboard and the friendships, nothing per friend
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+        verify(countingDatabase, times(2)).withConnection((ConnectionRunnable) any());
+    }
+
+    @Test
+    public void testAddFriend_thenOnFriendsLeaderboard() {
+        UserFactory.User user = userFactory.getUserById(4);
+        assertEquals(2, user.getFriendsLeaderboard().size());
+
+        assertTrue(user.addFriend(1));
+
+        assertEquals("user1", user.getFriendsLeaderboard().get(0).getUsername());
+    }
+}
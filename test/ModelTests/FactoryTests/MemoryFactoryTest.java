@@ -1,12 +1,20 @@
 package ModelTests.FactoryTests;
 
+import models.factory.ImageStore;
 import models.factory.MemoryFactory;
+import models.factory.SerializedResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import play.db.ConnectionCallable;
 import play.db.Database;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -18,22 +26,17 @@ public class MemoryFactoryTest {
     @Before
     public void setUp() {
         mockedDatabase = mock(Database.class);
-        memoryFactory = new MemoryFactory(mockedDatabase);
-    }
-
-    @Test
-    public void testGetMemoryIngredients_thenCallDatabase() {
-
-        memoryFactory.getMemoryIngredients("email");
-
-        verify(mockedDatabase).withConnection((ConnectionCallable<?>) Mockito.any());
+        memoryFactory = new MemoryFactory(mockedDatabase, new ImageStore(Duration.ofMinutes(1)));
     }
 
     @Test
-    public void testGetMemoryIngredientsForNextTier_thenCallDatabase() {
+    public void testGetDeckJson_thenDecksLoadedOnce() {
+        doReturn(Collections.emptyList()).when(mockedDatabase).withConnection((ConnectionCallable<?>) Mockito.any());
 
-        memoryFactory.getMemoryIngredients("email");
+        memoryFactory.getDeckJson(1);
+        SerializedResponse deck = memoryFactory.getDeckJson(2);
 
         verify(mockedDatabase).withConnection((ConnectionCallable<?>) Mockito.any());
+        assertEquals("[]", new String(deck.getJson(), StandardCharsets.UTF_8));
     }
 }
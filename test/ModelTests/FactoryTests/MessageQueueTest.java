@@ -0,0 +1,165 @@
+package ModelTests.FactoryTests;
+
+import com.google.common.collect.ImmutableMap;
+import models.Message;
+import models.factory.MessageQueue;
+import models.factory.RecentMessages;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.Database;
+import play.db.Databases;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MessageQueueTest {
+
+    private Database database;
+    private Database countingDatabase;
+    private MessageQueue messageQueue;
+
+    @Before
+    public void setupDatabase() throws SQLException {
+        database = Databases.inMemory(
+                "messageQueue",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `Message` (idMessage INT AUTO_INCREMENT PRIMARY KEY, sender INT, receiver INT, `time` TIMESTAMP, message_text VARCHAR(255))");
+        }
+        countingDatabase = Mockito.spy(database);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        if (messageQueue != null) messageQueue.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testEnqueue_whenBurst_thenWrittenInBatches() throws InterruptedException, SQLException {
+        // a long flush interval, so the burst is written by size only
+        messageQueue = new MessageQueue(countingDatabase, new RecentMessages(100, 1000, Duration.ofMinutes(10)), 1000, 100, Duration.ofSeconds(1), true);
+
+        for (int i = 0; i < 300; i++) {
+            assertTrue(messageQueue.enqueue(message(i)));
+        }
+
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+        assertEquals(300, countMessages());
+        verify(countingDatabase, atMost(4)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testEnqueue_whenWaitingForWrite_thenWrittenOnReturn() throws SQLException {
+        messageQueue = new MessageQueue(countingDatabase, new RecentMessages(100, 1000, Duration.ofMinutes(10)), 1000, 100, Duration.ofMillis(10), false);
+
+        assertTrue(messageQueue.enqueue(message(0)));
+
+        assertEquals(1, countMessages());
+        assertFalse(messageQueue.enqueue(new Message(1, 2, "2021-01-01 12:00:00.0", tooLongText())));
+        assertEquals(1, messageQueue.getLost());
+    }
+
+    @Test
+    public void testEnqueue_whenOneMessageBad_thenOthersOfTheBatchWritten() throws InterruptedException, SQLException {
+        messageQueue = new MessageQueue(countingDatabase, new RecentMessages(100, 1000, Duration.ofMinutes(10)), 1000, 100, Duration.ofMillis(200), true);
+
+        messageQueue.enqueue(message(0));
+        messageQueue.enqueue(new Message(1, 2, "2021-01-01 12:00:00.0", tooLongText()));
+        messageQueue.enqueue(message(1));
+
+        assertTrue(messageQueue.flush(Duration.ofSeconds(5)));
+        assertEquals(2, countMessages());
+        assertEquals(1, messageQueue.getLost());
+    }
+
+    @Test
+    public void testEnqueue_whenQueueFull_thenTurnedAway() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return invocation.callRealMethod();
+        }).when(countingDatabase).withConnection((ConnectionCallable<?>) any());
+        messageQueue = new MessageQueue(countingDatabase, new RecentMessages(100, 1000, Duration.ofMinutes(10)), 2, 1, Duration.ofMillis(10), true);
+
+        assertTrue(messageQueue.enqueue(message(0)));
+        writing.await();
+        assertTrue(messageQueue.enqueue(message(1)));
+        assertTrue(messageQueue.enqueue(message(2)));
+
+        assertFalse(messageQueue.enqueue(message(3)));
+        release.countDown();
+    }
+
+    @Test
+    public void testStop_thenQueuedMessagesWrittenAndNewOnesTurnedAway() throws SQLException {
+        messageQueue = new MessageQueue(countingDatabase, new RecentMessages(100, 1000, Duration.ofMinutes(10)), 1000, 100, Duration.ofMillis(200), true);
+        for (int i = 0; i < 10; i++) {
+            messageQueue.enqueue(message(i));
+        }
+
+        messageQueue.stop();
+
+        assertEquals(10, countMessages());
+        assertEquals(0, messageQueue.getQueued());
+        assertFalse(messageQueue.enqueue(message(10)));
+    }
+
+    @Test
+    public void testStop_whileSending_thenEveryQueuedMessageWritten() throws InterruptedException, SQLException {
+        messageQueue = new MessageQueue(countingDatabase, new RecentMessages(100, 1000, Duration.ofMinutes(10)), 100000, 100, Duration.ofMillis(10), true);
+        AtomicInteger queued = new AtomicInteger();
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread sender = new Thread(() -> {
+                int sent = 0;
+                while (messageQueue.enqueue(message(sent))) {
+                    sent++;
+                    queued.incrementAndGet();
+                }
+            });
+            sender.start();
+            senders.add(sender);
+        }
+        Thread.sleep(50);
+
+        messageQueue.stop();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        assertEquals(queued.get(), countMessages());
+    }
+
+    private Message message(int i) {
+        return new Message(1, 2, "2021-01-01 12:00:00.0", "message " + i);
+    }
+
+    private String tooLongText() {
+        return String.join("", Collections.nCopies(300, "x"));
+    }
+
+    private int countMessages() throws SQLException {
+        try (Connection conn = database.getConnection();
+             ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM `Message`")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package ModelTests.FactoryTests;
+
+import com.google.common.collect.ImmutableMap;
+import models.factory.ImageStore;
+import models.factory.PizzaRushFactory;
+import models.factory.factoryExceptions.ProfilePictureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.Database;
+import play.db.Databases;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class PizzaRushCatalogLoadingTest {
+
+    private static final int CHOPPING_INGREDIENTS = 20;
+    private static final int STAMPING_INGREDIENTS = 10;
+    private static final int PIZZAS = 20;
+    private static final int TOPPINGS = 5;
+
+    private Database database;
+    private Database countingDatabase;
+    private ImageStore imageStore;
+    private PizzaRushFactory pizzaRushFactory;
+
+    @Before
+    public void setupDatabase() throws SQLException, IOException {
+        database = Databases.inMemory(
+                "catalog",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        createCatalog(database.getConnection());
+
+        countingDatabase = Mockito.spy(database);
+        imageStore = new ImageStore(Duration.ofMillis(200));
+        pizzaRushFactory = new PizzaRushFactory(countingDatabase, imageStore);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testLoadIngredients_thenOneConnectionCheckout() {
+        List<PizzaRushFactory.Ingredient> ingredients = pizzaRushFactory.loadIngredients();
+
+        assertEquals(CHOPPING_INGREDIENTS + STAMPING_INGREDIENTS, ingredients.size());
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testLoadIngredients_thenBehaviorsFromJoinedRow() {
+        List<PizzaRushFactory.Ingredient> ingredients = pizzaRushFactory.loadIngredients();
+
+        PizzaRushFactory.ChoppingIngredient chopping = (PizzaRushFactory.ChoppingIngredient) ingredients.get(0);
+        assertEquals(1, chopping.getId());
+        assertEquals(51, chopping.getVertex_x_inPercent());
+        assertEquals(3, chopping.getHits_required());
+        assertTrue(chopping.getPicture_raw().startsWith("/images/"));
+
+        PizzaRushFactory.StampingIngredient stamping = (PizzaRushFactory.StampingIngredient) ingredients.get(CHOPPING_INGREDIENTS);
+        assertEquals(CHOPPING_INGREDIENTS + 1, stamping.getId());
+        assertEquals(1500, stamping.getDisplay_time());
+        assertEquals(2, stamping.getHits_required());
+    }
+
+    @Test
+    public void testLoadPizzas_thenOneConnectionCheckoutAndSharedIngredients() {
+        List<PizzaRushFactory.Ingredient> ingredients = pizzaRushFactory.loadIngredients();
+        reset(countingDatabase);
+
+        List<PizzaRushFactory.Order> pizzas = pizzaRushFactory.loadPizzas(ingredients);
+
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+        assertEquals(PIZZAS, pizzas.size());
+        for (PizzaRushFactory.Order pizza : pizzas) {
+            assertEquals(TOPPINGS, pizza.getIngredients().size());
+            for (PizzaRushFactory.Ingredient topping : pizza.getIngredients()) {
+                assertSame(ingredients.get(topping.getId() - 1), topping);
+            }
+        }
+    }
+
+    @Test
+    public void testLoadPizzas_whenIngredientUnknown_thenPizzaSkipped() throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("INSERT INTO `Pizza_has_Ingredient` VALUES (1, 999)");
+        }
+
+        List<PizzaRushFactory.Order> pizzas = pizzaRushFactory.loadPizzas(pizzaRushFactory.loadIngredients());
+
+        assertEquals(PIZZAS - 1, pizzas.size());
+        for (PizzaRushFactory.Order pizza : pizzas) {
+            assertNotEquals(1, pizza.getId());
+        }
+    }
+
+    @Test
+    public void testReloadCatalog_thenThreeConnectionCheckouts() {
+        PizzaRushFactory.Catalog catalog = pizzaRushFactory.reloadCatalog();
+
+        // revision, ingredients and pizzas
+        verify(countingDatabase, times(3)).withConnection((ConnectionCallable<?>) any());
+        assertEquals(CHOPPING_INGREDIENTS + STAMPING_INGREDIENTS, catalog.getIngredients().size());
+        assertEquals(PIZZAS, catalog.getPizzas().size());
+    }
+
+    @Test
+    public void testReloadCatalog_thenIndexedByTier() {
+        PizzaRushFactory.Catalog catalog = pizzaRushFactory.reloadCatalog();
+
+        assertTrue(catalog.getIngredients(0).isEmpty());
+        assertEquals("[]", new String(catalog.getIngredientsJson(0).getJson(), StandardCharsets.UTF_8));
+        for (int tier = 1; tier <= 3; tier++) {
+            for (PizzaRushFactory.Ingredient ingredient : catalog.getIngredients(tier)) {
+                assertTrue(ingredient.getTier() <= tier);
+            }
+            for (PizzaRushFactory.Order pizza : catalog.getPizzas(tier)) {
+                for (PizzaRushFactory.Ingredient ingredient : pizza.getIngredients()) {
+                    assertTrue(ingredient.getTier() <= tier);
+                }
+            }
+        }
+        assertEquals(catalog.getIngredients(), catalog.getIngredients(5));
+        assertEquals(catalog.getPizzas(), catalog.getPizzas(5));
+        assertSame(catalog.getPizzasJson(3), catalog.getPizzasJson(5));
+    }
+
+    @Test
+    public void testReloadCatalog_thenStoredPictureBytesServedFromImageStore() throws IOException {
+        PizzaRushFactory.Ingredient ingredient = pizzaRushFactory.reloadCatalog().getIngredients().get(0);
+
+        String hash = ingredient.getPicture_burnt().substring("/images/".length());
+        assertArrayEquals(createPicture(), imageStore.get(hash));
+    }
+
+    @Test
+    public void testReloadCatalog_whenPictureReplaced_thenOldPictureDroppedAfterGracePeriod() throws IOException, SQLException, InterruptedException {
+        pizzaRushFactory.reloadCatalog();
+        byte[] replacement = createPicture(8);
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE `Ingredient` SET picture_raw = ?, picture_raw_distraction = ?, picture_processed = ?, picture_baked = ?, picture_burnt = ?")) {
+            for (int column = 1; column <= 5; column++) {
+                stmt.setBytes(column, replacement);
+            }
+            stmt.executeUpdate();
+        }
+
+        pizzaRushFactory.reloadCatalog();
+
+        // clients still in a round can fetch the old picture for a while
+        assertArrayEquals(replacement, imageStore.get(ImageStore.getHash(replacement)));
+        assertArrayEquals(createPicture(), imageStore.get(ImageStore.getHash(createPicture())));
+        Thread.sleep(300);
+        assertNull(imageStore.get(ImageStore.getHash(createPicture())));
+        assertEquals(1, imageStore.size());
+    }
+
+    @Test
+    public void testRefreshCatalog_whenRevisionCountedUp_thenReloaded() throws SQLException {
+        pizzaRushFactory.reloadCatalog();
+        assertFalse(pizzaRushFactory.refreshCatalog());
+
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().executeUpdate("UPDATE `CatalogRevision` SET revision = revision + 1");
+        }
+
+        assertTrue(pizzaRushFactory.refreshCatalog());
+        assertEquals(2, pizzaRushFactory.getCatalog().getVersion());
+        assertEquals(Long.valueOf(1), pizzaRushFactory.getCatalog().getRevision());
+    }
+
+    @Test(expected = ProfilePictureException.class)
+    public void testLoadIngredients_whenPictureInvalid_thenException() throws SQLException {
+        Connection conn = database.getConnection();
+        conn.createStatement().executeUpdate("UPDATE `Ingredient` SET picture_baked = X'00010203' WHERE idIngredient = 1");
+        conn.close();
+
+        pizzaRushFactory.loadIngredients();
+    }
+
+    private void createCatalog(Connection conn) throws SQLException, IOException {
+        Statement stmt = conn.createStatement();
+        stmt.execute("CREATE TABLE `Ingredient` (idIngredient INT PRIMARY KEY, name VARCHAR(45), description VARCHAR(255), picture_raw BLOB, picture_raw_distraction BLOB, picture_processed BLOB, picture_baked BLOB, picture_burnt BLOB, zIndex INT, Tier_idTier INT)");
+        stmt.execute("CREATE TABLE `FlightBehavior` (Ingredient_fk INT PRIMARY KEY, vertex_x_inPercent INT, vertex_y_inPercent INT, speed DOUBLE, rotation INT, hits_required INT)");
+        stmt.execute("CREATE TABLE `StampBehavior` (Ingredient_fk INT PRIMARY KEY, display_time INT, disabling_time INT, hits_required INT)");
+        stmt.execute("CREATE TABLE `Pizza` (idPizza INT PRIMARY KEY, name VARCHAR(45), points INT, order_time INT)");
+        stmt.execute("CREATE TABLE `Pizza_has_Ingredient` (Pizza_idPizza INT, Ingredient_idIngredient INT, PRIMARY KEY (Pizza_idPizza, Ingredient_idIngredient))");
+        // the triggers of conf/sql/catalog_revision.sql are MySQL only, the tests count up the revision themselves
+        stmt.execute("CREATE TABLE `CatalogRevision` (revision BIGINT NOT NULL)");
+        stmt.execute("INSERT INTO `CatalogRevision` VALUES (0)");
+        stmt.close();
+
+        byte[] picture = createPicture();
+        PreparedStatement insertIngredient = conn.prepareStatement("INSERT INTO `Ingredient` VALUES (?, ?, '', ?, ?, ?, ?, ?, 1, ?)");
+        PreparedStatement insertFlight = conn.prepareStatement("INSERT INTO `FlightBehavior` VALUES (?, 51, 40, 1.5, 90, 3)");
+        PreparedStatement insertStamp = conn.prepareStatement("INSERT INTO `StampBehavior` VALUES (?, 1500, 2000, 2)");
+        for (int id = 1; id <= CHOPPING_INGREDIENTS + STAMPING_INGREDIENTS; id++) {
+            insertIngredient.setInt(1, id);
+            insertIngredient.setString(2, "ingredient" + id);
+            for (int column = 3; column <= 7; column++) {
+                insertIngredient.setBytes(column, picture);
+            }
+            insertIngredient.setInt(8, id % 3 + 1);
+            insertIngredient.executeUpdate();
+
+            PreparedStatement insertBehavior = id <= CHOPPING_INGREDIENTS ? insertFlight : insertStamp;
+            insertBehavior.setInt(1, id);
+            insertBehavior.executeUpdate();
+        }
+        insertIngredient.close();
+        insertFlight.close();
+        insertStamp.close();
+
+        PreparedStatement insertPizza = conn.prepareStatement("INSERT INTO `Pizza` VALUES (?, ?, 100, 30)");
+        PreparedStatement insertTopping = conn.prepareStatement("INSERT INTO `Pizza_has_Ingredient` VALUES (?, ?)");
+        for (int id = 1; id <= PIZZAS; id++) {
+            insertPizza.setInt(1, id);
+            insertPizza.setString(2, "pizza" + id);
+            insertPizza.executeUpdate();
+            for (int topping = 0; topping < TOPPINGS; topping++) {
+                insertTopping.setInt(1, id);
+                insertTopping.setInt(2, (id + topping) % (CHOPPING_INGREDIENTS + STAMPING_INGREDIENTS) + 1);
+                insertTopping.executeUpdate();
+            }
+        }
+        insertPizza.close();
+        insertTopping.close();
+        conn.close();
+    }
+
+    private byte[] createPicture() throws IOException {
+        return createPicture(4);
+    }
+
+    private byte[] createPicture(int size) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB), "png", bos);
+        return bos.toByteArray();
+    }
+}
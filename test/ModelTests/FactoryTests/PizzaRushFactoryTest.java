@@ -1,5 +1,6 @@
 package ModelTests.FactoryTests;
 
+import models.factory.ImageStore;
 import models.factory.PizzaRushFactory;
 import org.junit.Before;
 import org.junit.Test;
@@ -7,6 +8,10 @@ import org.mockito.Mockito;
 import play.db.ConnectionCallable;
 import play.db.Database;
 
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class PizzaRushFactoryTest {
@@ -17,7 +22,7 @@ public class PizzaRushFactoryTest {
     @Before
     public void setUp() {
         mockedDatabase = Mockito.mock(Database.class);
-        pizzaRushFactory = new PizzaRushFactory(mockedDatabase);
+        pizzaRushFactory = new PizzaRushFactory(mockedDatabase, new ImageStore(Duration.ofMinutes(1)));
     }
 
     @Test
@@ -49,10 +54,45 @@ public class PizzaRushFactoryTest {
     }
 
     @Test
-    public void testGetPizzas_thenCallDatabase() {
+    public void testGetIngredientsForTier_thenCatalogLoadedOnce() {
+        PizzaRushFactory factory = spy(pizzaRushFactory);
+        doReturn(Collections.emptyList()).when(factory).loadIngredients();
+        doReturn(Collections.emptyList()).when(factory).loadPizzas(any());
 
-        pizzaRushFactory.getPizzas();
+        factory.getIngredientsForTier(1);
+        factory.getPizzasForTier(1);
 
-        verify(mockedDatabase).withConnection((ConnectionCallable<?>) Mockito.any());
+        verify(factory, times(1)).reloadCatalog();
+    }
+
+    @Test
+    public void testRefreshCatalog_whenRevisionChanged_thenNewVersion() {
+        PizzaRushFactory factory = spy(pizzaRushFactory);
+        doReturn(Collections.emptyList()).when(factory).loadIngredients();
+        doReturn(Collections.emptyList()).when(factory).loadPizzas(any());
+        doReturn(1L, 1L, 2L).when(factory).getCatalogRevision();
+
+        factory.reloadCatalog();
+        assertFalse(factory.refreshCatalog());
+        assertTrue(factory.refreshCatalog());
+
+        verify(factory, times(2)).reloadCatalog();
+        assertEquals(2, factory.getCatalog().getVersion());
+    }
+
+    @Test
+    public void testRefreshCatalog_whenRevisionUnreadable_thenCatalogKept() {
+        PizzaRushFactory factory = spy(pizzaRushFactory);
+        doReturn(Collections.emptyList()).when(factory).loadIngredients();
+        doReturn(Collections.emptyList()).when(factory).loadPizzas(any());
+        doReturn(1L).when(factory).getCatalogRevision();
+        factory.reloadCatalog();
+        doThrow(new RuntimeException("no connection")).when(mockedDatabase).withConnection((ConnectionCallable<?>) Mockito.any());
+        doCallRealMethod().when(factory).getCatalogRevision();
+
+        assertFalse(factory.refreshCatalog());
+
+        verify(factory, times(1)).reloadCatalog();
+        assertEquals(1, factory.getCatalog().getVersion());
     }
 }
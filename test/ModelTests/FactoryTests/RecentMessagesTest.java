@@ -0,0 +1,136 @@
+package ModelTests.FactoryTests;
+
+import models.Message;
+import models.factory.RecentMessages;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class RecentMessagesTest {
+
+    @Test
+    public void testAppend_whenFull_thenOldestDroppedAndNoLongerComplete() {
+        RecentMessages recentMessages = new RecentMessages(3, 10, Duration.ofMinutes(1));
+        recentMessages.startLoading(1, 2);
+        recentMessages.finishLoading(1, 2, Collections.singletonList(message(1, 2, 0)), true);
+
+        recentMessages.append(Arrays.asList(message(2, 1, 1), message(1, 2, 2)));
+        assertTrue(recentMessages.get(1, 2).isComplete());
+        recentMessages.append(Collections.singletonList(message(2, 1, 3)));
+
+        RecentMessages.Snapshot snapshot = recentMessages.get(2, 1);
+        assertEquals(3, snapshot.getMessages().size());
+        assertEquals("m1", snapshot.getMessages().get(0).getMessage_text());
+        assertFalse(snapshot.isComplete());
+        assertFalse(snapshot.covers(time(0)));
+        assertTrue(snapshot.covers(time(1)));
+    }
+
+    @Test
+    public void testAppend_whenOutOfOrder_thenKeptInChronologicalOrder() {
+        RecentMessages recentMessages = new RecentMessages(3, 10, Duration.ofMinutes(1));
+        recentMessages.startLoading(1, 2);
+        recentMessages.finishLoading(1, 2, Arrays.asList(message(1, 2, 1), message(1, 2, 5)), true);
+
+        recentMessages.append(Collections.singletonList(message(2, 1, 3)));
+        recentMessages.append(Collections.singletonList(message(2, 1, 0)));
+
+        RecentMessages.Snapshot snapshot = recentMessages.get(1, 2);
+        assertEquals(Arrays.asList("m1", "m3", "m5"), Arrays.asList(snapshot.getMessages().stream().map(Message::getMessage_text).toArray()));
+        assertTrue(snapshot.covers(time(1)));
+        assertFalse(snapshot.covers(time(0)));
+    }
+
+    @Test
+    public void testFinishLoading_thenMessagesWrittenMeanwhileKeptOnce() {
+        RecentMessages recentMessages = new RecentMessages(10, 10, Duration.ofMinutes(1));
+        recentMessages.startLoading(1, 2);
+        assertNull(recentMessages.get(1, 2));
+
+        // written while the db was read, one of them made it into the read
+        recentMessages.append(Arrays.asList(message(1, 2, 1), message(2, 1, 2)));
+        RecentMessages.Snapshot snapshot = recentMessages.finishLoading(1, 2, Arrays.asList(message(2, 1, 0), message(1, 2, 1)), true);
+
+        assertEquals(3, snapshot.getMessages().size());
+        assertEquals("m2", snapshot.getMessages().get(2).getMessage_text());
+    }
+
+    @Test
+    public void testFinishLoading_whenEqualMessagesInOneSecond_thenAllKept() {
+        RecentMessages recentMessages = new RecentMessages(10, 10, Duration.ofMinutes(1));
+        recentMessages.startLoading(1, 2);
+
+        // "ok" twice in the same second, the second one written while the db was read
+        recentMessages.append(Collections.singletonList(new Message(2, 1, 2, time(0).toString(), "ok")));
+        RecentMessages.Snapshot snapshot = recentMessages.finishLoading(1, 2, Collections.singletonList(new Message(1, 1, 2, time(0).toString(), "ok")), true);
+
+        assertEquals(2, snapshot.getMessages().size());
+        assertTrue(snapshot.isComplete());
+    }
+
+    @Test
+    public void testAbortLoading_thenIdleConversationsStillEvicted() throws InterruptedException {
+        RecentMessages recentMessages = new RecentMessages(10, 10, Duration.ofMillis(20));
+        recentMessages.startLoading(1, 2);
+        recentMessages.abortLoading(1, 2);
+        load(recentMessages, 1, 3);
+
+        Thread.sleep(50);
+
+        assertNull(recentMessages.get(1, 3));
+        assertEquals(0, recentMessages.size());
+    }
+
+    @Test
+    public void testAppend_whenNotBuffered_thenIgnored() {
+        RecentMessages recentMessages = new RecentMessages(10, 10, Duration.ofMinutes(1));
+
+        recentMessages.append(Collections.singletonList(message(1, 2, 0)));
+
+        assertNull(recentMessages.get(1, 2));
+        assertEquals(0, recentMessages.size());
+    }
+
+    @Test
+    public void testStartLoading_whenTooManyConversations_thenLeastRecentlyUsedEvicted() {
+        RecentMessages recentMessages = new RecentMessages(10, 2, Duration.ofMinutes(1));
+        load(recentMessages, 1, 2);
+        load(recentMessages, 1, 3);
+        recentMessages.get(1, 2);
+
+        load(recentMessages, 1, 4);
+
+        assertEquals(2, recentMessages.size());
+        assertNotNull(recentMessages.get(1, 2));
+        assertNull(recentMessages.get(1, 3));
+    }
+
+    @Test
+    public void testGet_whenIdle_thenEvicted() throws InterruptedException {
+        RecentMessages recentMessages = new RecentMessages(10, 10, Duration.ofMillis(20));
+        load(recentMessages, 1, 2);
+
+        Thread.sleep(50);
+
+        assertNull(recentMessages.get(1, 2));
+        assertEquals(0, recentMessages.size());
+    }
+
+    private void load(RecentMessages recentMessages, int userA, int userB) {
+        recentMessages.startLoading(userA, userB);
+        recentMessages.finishLoading(userA, userB, Collections.emptyList(), true);
+    }
+
+    private Message message(int sender, int receiver, int second) {
+        return new Message(second + 1, sender, receiver, time(second).toString(), "m" + second);
+    }
+
+    private Timestamp time(int second) {
+        return Timestamp.valueOf("2021-01-01 12:00:0" + second);
+    }
+}
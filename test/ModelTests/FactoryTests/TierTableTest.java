@@ -0,0 +1,110 @@
+package ModelTests.FactoryTests;
+
+import ModelTests.UserFactoryFixture;
+import com.google.common.collect.ImmutableMap;
+import models.LevelUp;
+import models.factory.FriendGraph;
+import models.factory.Leaderboard;
+import models.factory.TierTable;
+import models.factory.UserCache;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.Database;
+import play.db.Databases;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TierTableTest {
+
+    private Database database;
+    private Database countingDatabase;
+    private TierTable tierTable;
+    private UserFactoryFixture fixture;
+    private UserFactory userFactory;
+    private LevelUp levelUp;
+
+    @Before
+    public void setupDatabase() throws SQLException {
+        database = Databases.inMemory(
+                "tiers",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `Tier` (idTier INT PRIMARY KEY, name VARCHAR(45), gesamtpunkte INT)");
+            conn.createStatement().execute("INSERT INTO `Tier` VALUES (3, 'Pizzaiolo', 5000), (1, 'Tellerwäscher', 0), (2, 'Lehrling', 1500)");
+        }
+        countingDatabase = Mockito.spy(database);
+        tierTable = new TierTable(countingDatabase);
+        fixture = new UserFactoryFixture(mock(Database.class), new UserCache(100, Duration.ofMinutes(1)),
+                new Leaderboard(mock(Database.class)), new FriendGraph(mock(Database.class)), tierTable, 100);
+        userFactory = fixture.userFactory;
+        levelUp = new LevelUp(tierTable);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        fixture.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testCheckForLevelUp_whenEnoughPoints_thenPossible() {
+        LevelUp.LevelUpViewModel actual = levelUp.checkForLevelUp(createUser(1, 2000));
+
+        assertTrue(actual.isLevelUpPossible());
+        assertEquals("Lehrling", actual.getNextTier());
+        assertEquals(1500, actual.getNextTierPoints());
+        assertEquals(0, actual.getCurrentTierPoints());
+    }
+
+    @Test
+    public void testCheckForLevelUp_whenNotEnoughPoints_thenNextTierShown() {
+        LevelUp.LevelUpViewModel actual = levelUp.checkForLevelUp(createUser(1, 1499));
+
+        assertFalse(actual.isLevelUpPossible());
+        assertEquals("Lehrling", actual.getNextTier());
+    }
+
+    @Test
+    public void testCheckForLevelUp_whenHighestTier_thenNoNextTier() {
+        LevelUp.LevelUpViewModel actual = levelUp.checkForLevelUp(createUser(3, 9000));
+
+        assertFalse(actual.isLevelUpPossible());
+        assertEquals("", actual.getNextTier());
+        assertEquals(-1, actual.getNextTierPoints());
+        assertEquals(5000, actual.getCurrentTierPoints());
+    }
+
+    @Test
+    public void testGetHighestReachedIndex_thenBinarySearchOverThresholds() {
+        TierTable.Tiers tiers = tierTable.getTiers();
+
+        assertEquals(0, tiers.getHighestReachedIndex(-1));
+        assertEquals(0, tiers.getHighestReachedIndex(1499));
+        assertEquals(1, tiers.getHighestReachedIndex(1500));
+        assertEquals(2, tiers.getHighestReachedIndex(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testGetNameFromTierId_thenLoadedOnce() {
+        assertEquals("Pizzaiolo", createUser(3, 0).getNameFromTierId());
+        assertEquals("Tellerwäscher", createUser(1, 0).getNameFromTierId());
+        assertNull(tierTable.getName(4));
+        levelUp.checkForLevelUp(createUser(2, 1600));
+
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    private UserFactory.User createUser(int tier, int totalPoints) {
+        return userFactory.new User(1, "mario", "mario@pizza.it", totalPoints, 0, null, tier);
+    }
+}
@@ -0,0 +1,115 @@
+package ModelTests.FactoryTests;
+
+import ModelTests.UserFactoryFixture;
+import models.factory.FriendGraph;
+import models.factory.Leaderboard;
+import models.factory.TierTable;
+import models.factory.UserCache;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.Database;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class UserCacheTest {
+
+    private UserFactoryFixture fixture;
+    private UserFactory userFactory;
+    private UserCache userCache;
+
+    @Before
+    public void setUp() {
+        userCache = new UserCache(2, Duration.ofMinutes(1));
+        fixture = new UserFactoryFixture(mock(Database.class), userCache, new Leaderboard(mock(Database.class)), new FriendGraph(mock(Database.class)), new TierTable(mock(Database.class)), 100);
+        userFactory = fixture.userFactory;
+    }
+
+    @After
+    public void stopMessageQueue() {
+        fixture.stop();
+    }
+
+    @Test
+    public void testPut_thenFoundByIdEmailAndUsername() {
+        UserFactory.User user = createUser(1, "mario");
+
+        userCache.put(user);
+
+        assertEquals("mario", userCache.getById(1).getUsername());
+        assertEquals(1, userCache.getByEmail("mario@pizza.it").getId());
+        assertEquals(1, userCache.getByUsername("mario").getId());
+        assertNull(userCache.getByUsername("luigi"));
+        assertEquals(0.75, userCache.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void testGetUserByEmail_whenCached_thenNoDatabase() {
+        UserFactory.User user = createUser(1, "mario");
+        userCache.put(user);
+
+        assertEquals("mario", userFactory.getUserByEmail("mario@pizza.it").getUsername());
+    }
+
+    @Test
+    public void testGet_whenCopyChanged_thenCachedUserUnchanged() {
+        userCache.put(createUser(1, "mario"));
+
+        UserFactory.User copy = userCache.getById(1);
+        copy.setProfilePicture(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+        assertNotSame(copy, userCache.getById(1));
+        assertNull(userCache.getById(1).getProfilePicture());
+    }
+
+    @Test
+    public void testPut_whenUsernameChanged_thenOldUsernameRemoved() {
+        UserFactory.User user = createUser(1, "mario");
+        userCache.put(user);
+
+        userCache.put(createUser(1, "luigi"));
+
+        assertNull(userCache.getByUsername("mario"));
+        assertEquals("luigi", userCache.getById(1).getUsername());
+    }
+
+    @Test
+    public void testPut_whenFull_thenLeastRecentlyUsedEvicted() {
+        userCache.put(createUser(1, "mario"));
+        userCache.put(createUser(2, "luigi"));
+        userCache.getById(1);
+
+        userCache.put(createUser(3, "peach"));
+
+        assertEquals(2, userCache.size());
+        assertNotNull(userCache.getById(1));
+        assertNull(userCache.getByUsername("luigi"));
+    }
+
+    @Test
+    public void testGet_whenExpired_thenMiss() {
+        userCache = new UserCache(2, Duration.ZERO);
+        userCache.put(createUser(1, "mario"));
+
+        assertNull(userCache.getById(1));
+        assertEquals(0, userCache.size());
+    }
+
+    @Test
+    public void testInvalidate_thenMiss() {
+        userCache.put(createUser(1, "mario"));
+
+        userCache.invalidate(1);
+
+        assertNull(userCache.getByEmail("mario@pizza.it"));
+    }
+
+    private UserFactory.User createUser(int id, String username) {
+        return userFactory.new User(id, username, "mario@pizza.it", 0, 0, null, 1);
+    }
+}
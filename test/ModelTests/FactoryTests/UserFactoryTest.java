@@ -1,5 +1,6 @@
 package ModelTests.FactoryTests;
 
+import ModelTests.UserFactoryFixture;
 import com.google.common.collect.ImmutableMap;
 import models.factory.UserFactory;
 import models.factory.factoryExceptions.EmailAlreadyInUseException;
@@ -15,6 +16,7 @@ import static org.junit.Assert.*;
 public class UserFactoryTest {
 
     private Database database;
+    private UserFactoryFixture fixture;
     private UserFactory userFactory;
 
     @Before
@@ -26,11 +28,13 @@ public class UserFactoryTest {
                 ImmutableMap.of(
                         "username", "sopra-2020WS-team01",
                         "password", "M3vfDjc8"));
-        userFactory = new models.factory.UserFactory(database);
+        fixture = new UserFactoryFixture(database);
+        userFactory = fixture.userFactory;
     }
 
     @After
     public void shutdownDatabase() {
+        fixture.stop();
         database.shutdown();
     }
 
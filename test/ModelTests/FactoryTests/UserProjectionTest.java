@@ -0,0 +1,129 @@
+package ModelTests.FactoryTests;
+
+import ModelTests.UserFactoryFixture;
+import com.google.common.collect.ImmutableMap;
+import models.factory.UserFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionCallable;
+import play.db.Database;
+import play.db.Databases;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class UserProjectionTest {
+
+    private Database database;
+    private Database countingDatabase;
+    private UserFactoryFixture fixture;
+    private UserFactory userFactory;
+
+    @Before
+    public void setupDatabase() throws SQLException, IOException {
+        database = Databases.inMemory(
+                "users",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `User` (idUser INT PRIMARY KEY, username VARCHAR(45), email VARCHAR(45), password VARCHAR(45), "
+                    + "gesamtpunkte INT, highscore INT, profilepicture BLOB, Tier_idTier INT)");
+            PreparedStatement stmt = conn.prepareStatement("INSERT INTO `User` VALUES (?, ?, ?, 'secret', 10, 5, ?, 1)");
+            stmt.setInt(1, 1);
+            stmt.setString(2, "mario");
+            stmt.setString(3, "mario@pizza.it");
+            stmt.setBytes(4, createPicture());
+            stmt.executeUpdate();
+            stmt.setInt(1, 2);
+            stmt.setString(2, "luigi");
+            stmt.setString(3, "luigi@pizza.it");
+            stmt.setBytes(4, null);
+            stmt.executeUpdate();
+        }
+
+        countingDatabase = Mockito.spy(database);
+        fixture = new UserFactoryFixture(countingDatabase);
+        userFactory = fixture.userFactory;
+    }
+
+    @After
+    public void shutdownDatabase() {
+        fixture.stop();
+        database.shutdown();
+    }
+
+    @Test
+    public void testGetUserById_thenPictureNotLoaded() {
+        UserFactory.User user = userFactory.getUserById(1);
+
+        assertEquals("mario", user.getUsername());
+        assertEquals(10, user.getTotalPoints());
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetProfilePictureSrc_thenPictureLoadedOnce() {
+        UserFactory.User user = userFactory.getUserById(1);
+
+        String src = user.getProfilePictureSrc();
+
+        assertTrue(src.startsWith("data:image/png;base64,"));
+        assertEquals(src, user.getProfilePictureSrc());
+        assertNotNull(user.getProfilePicture());
+        verify(countingDatabase, times(2)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetProfilePictureSrc_whenCachedUserLoadedIt_thenNotReadAgain() {
+        userFactory.getUserById(1).getProfilePictureSrc();
+        clearInvocations(countingDatabase);
+
+        UserFactory.User user = userFactory.getUserByEmail("mario@pizza.it");
+
+        assertTrue(user.getProfilePictureSrc().startsWith("data:image/png;base64,"));
+        verify(countingDatabase, never()).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetProfilePictureSrc_whenUserChangedMeanwhile_thenOldPictureNotCached() {
+        UserFactory.User before = userFactory.getUserById(1);
+        // another request changes the user, so the cached user is a new one
+        userFactory.getUserById(1).setTotalPoints(20);
+
+        before.getProfilePictureSrc();
+        clearInvocations(countingDatabase);
+        userFactory.getUserById(1).getProfilePictureSrc();
+
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    @Test
+    public void testGetProfilePictureSrc_whenNoPicture_thenNull() {
+        UserFactory.User user = userFactory.getUserByEmail("luigi@pizza.it");
+
+        assertNull(user.getProfilePictureSrc());
+        assertNull(user.getProfilePicture());
+    }
+
+    @Test
+    public void testGetAllUsers_thenPicturesNotLoaded() {
+        assertEquals(2, userFactory.getAllUsers().size());
+        verify(countingDatabase, times(1)).withConnection((ConnectionCallable<?>) any());
+    }
+
+    private byte[] createPicture() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,168 @@
+package ModelTests.FactoryTests;
+
+import com.google.common.collect.ImmutableMap;
+import models.factory.Leaderboard;
+import models.factory.WindowedLeaderboards;
+import models.factory.WindowedLeaderboards.Window;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.db.ConnectionRunnable;
+import play.db.Database;
+import play.db.Databases;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class WindowedLeaderboardsTest {
+
+    // a Wednesday
+    private static final Instant NOW = Instant.parse("2021-06-16T12:00:00Z");
+
+    private Database database;
+    private MutableClock clock;
+    private WindowedLeaderboards windowedLeaderboards;
+
+    @Before
+    public void setupDatabase() throws SQLException {
+        database = Databases.inMemory(
+                "windows",
+                ImmutableMap.of("MODE", "MySQL", "DATABASE_TO_UPPER", "FALSE", "CASE_INSENSITIVE_IDENTIFIERS", "TRUE"),
+                ImmutableMap.of());
+        try (Connection conn = database.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE `User` (idUser INT PRIMARY KEY, username VARCHAR(45))");
+            conn.createStatement().execute("INSERT INTO `User` VALUES (1, 'mario'), (2, 'luigi'), (3, 'peach')");
+            conn.createStatement().execute("CREATE TABLE `WindowScore` (timeWindow VARCHAR(10) NOT NULL, windowStart TIMESTAMP NOT NULL, "
+                    + "User_idUser INT NOT NULL, score INT NOT NULL, PRIMARY KEY (timeWindow, windowStart, User_idUser))");
+        }
+        clock = new MutableClock(NOW);
+        windowedLeaderboards = new WindowedLeaderboards(database, clock);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testSubmit_thenBestScorePerUser() {
+        windowedLeaderboards.submit(1, "mario", 300);
+        windowedLeaderboards.submit(2, "luigi", 500);
+        windowedLeaderboards.submit(1, "mario", 200);
+        windowedLeaderboards.submit(3, "peach", 0);
+
+        List<Leaderboard.Position> top = windowedLeaderboards.getTop(Window.DAILY, 10);
+
+        assertEquals(2, top.size());
+        assertEquals("luigi", top.get(0).getUsername());
+        assertEquals(300, top.get(1).getHighScore());
+        assertEquals(2, windowedLeaderboards.getPosition(Window.WEEKLY, 1).getRank());
+        assertNull(windowedLeaderboards.getPosition(Window.WEEKLY, 3));
+    }
+
+    @Test
+    public void testNextDay_thenDailyResetAndWeeklyKept() throws SQLException {
+        windowedLeaderboards.submit(1, "mario", 300);
+
+        clock.advance(Duration.ofDays(1));
+        windowedLeaderboards.submit(2, "luigi", 100);
+
+        assertEquals(1, windowedLeaderboards.getTop(Window.DAILY, 10).size());
+        assertEquals(2, windowedLeaderboards.getTop(Window.WEEKLY, 10).size());
+        assertEquals(3, countRows());
+    }
+
+    @Test
+    public void testNextWeek_thenBothReset() {
+        windowedLeaderboards.submit(1, "mario", 300);
+
+        clock.advance(Duration.ofDays(5));
+
+        assertTrue(windowedLeaderboards.getTop(Window.DAILY, 10).isEmpty());
+        assertTrue(windowedLeaderboards.getTop(Window.WEEKLY, 10).isEmpty());
+    }
+
+    @Test
+    public void testRestart_thenCurrentWindowRestored() {
+        windowedLeaderboards.submit(1, "mario", 300);
+        windowedLeaderboards.submit(2, "luigi", 500);
+        windowedLeaderboards.submit(1, "mario", 400);
+
+        WindowedLeaderboards restarted = new WindowedLeaderboards(database, clock);
+
+        List<Leaderboard.Position> top = restarted.getTop(Window.WEEKLY, 10);
+        assertEquals(2, top.size());
+        assertEquals("mario", top.get(1).getUsername());
+        assertEquals(400, top.get(1).getHighScore());
+    }
+
+    @Test
+    public void testGetTop_whileScoreWritten_thenNotBlocked() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Database slowDatabase = Mockito.spy(database);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return invocation.callRealMethod();
+        }).when(slowDatabase).withConnection(any(ConnectionRunnable.class));
+        WindowedLeaderboards slowLeaderboards = new WindowedLeaderboards(slowDatabase, clock);
+        slowLeaderboards.getTop(Window.DAILY, 10);
+
+        Thread submitter = new Thread(() -> slowLeaderboards.submit(1, "mario", 300));
+        submitter.start();
+        writing.await();
+
+        assertTrue(slowLeaderboards.getTop(Window.DAILY, 10).isEmpty());
+        release.countDown();
+        submitter.join();
+        assertEquals(1, slowLeaderboards.getTop(Window.DAILY, 10).size());
+    }
+
+    private int countRows() throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM `WindowScore`");
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
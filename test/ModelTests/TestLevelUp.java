@@ -2,6 +2,7 @@ package ModelTests;
 
 import com.google.common.collect.ImmutableMap;
 import models.LevelUp;
+import models.factory.TierTable;
 import models.factory.UserFactory;
 import org.junit.After;
 import org.junit.Before;
@@ -18,6 +19,7 @@ public class TestLevelUp {
     private final int ENOUGH_FOR_TIER_TWO = 2000;
     private final int NOT_ENOUGH_FOR_TIER_TWO = 1499;
     private Database database;
+    private UserFactoryFixture fixture;
     private UserFactory userFactory;
     private LevelUp levelUp;
 
@@ -31,12 +33,14 @@ public class TestLevelUp {
                         "username", "sopra-2020WS-team01",
                         "password", "M3vfDjc8"));
 
-        userFactory = new models.factory.UserFactory(database);
-        levelUp = new LevelUp(database);
+        fixture = new UserFactoryFixture(database);
+        userFactory = fixture.userFactory;
+        levelUp = new LevelUp(new TierTable(database));
     }
 
     @After
     public void shutdownDatabase() {
+        fixture.stop();
         database.shutdown();
     }
 
@@ -0,0 +1,56 @@
+package ModelTests;
+
+import models.factory.FriendGraph;
+import models.factory.ImageCodec;
+import models.factory.Leaderboard;
+import models.factory.MessageQueue;
+import models.factory.RecentMessages;
+import models.factory.TierTable;
+import models.factory.UserCache;
+import models.factory.UserFactory;
+import play.db.Database;
+
+import java.time.Duration;
+
+/**
+ * A UserFactory for tests, wired like the application: the MessageQueue hands the messages it wrote to the same
+ * RecentMessages the UserFactory reads from. Call {@link #stop()} after the test, so the writer thread is stopped.
+ */
+public class UserFactoryFixture {
+
+    public final RecentMessages recentMessages;
+    public final MessageQueue messageQueue;
+    public final UserFactory userFactory;
+
+    /**
+     * Wires a UserFactory whose parts all use the same db.
+     *
+     * @param db the db
+     */
+    public UserFactoryFixture(Database db) {
+        this(db, new UserCache(100, Duration.ofMinutes(1)), new Leaderboard(db), new FriendGraph(db), new TierTable(db), 100);
+    }
+
+    /**
+     * Wires a UserFactory with the given parts.
+     *
+     * @param db                     the db of the UserFactory and the MessageQueue
+     * @param userCache              the user cache
+     * @param leaderboard            the leaderboard
+     * @param friendGraph            the friend graph
+     * @param tierTable              the tier table
+     * @param recentMessagesCapacity the number of messages kept per conversation
+     */
+    public UserFactoryFixture(Database db, UserCache userCache, Leaderboard leaderboard, FriendGraph friendGraph, TierTable tierTable, int recentMessagesCapacity) {
+        recentMessages = new RecentMessages(recentMessagesCapacity, 1000, Duration.ofMinutes(10));
+        messageQueue = new MessageQueue(db, recentMessages, 1000, 100, Duration.ofMillis(10), false);
+        userFactory = new UserFactory(db, new ImageCodec(1024 * 1024), userCache, leaderboard, friendGraph, tierTable, messageQueue, recentMessages);
+    }
+
+    /**
+     * Writes the queued messages and stops the writer thread.
+     */
+    public void stop() {
+        messageQueue.stop();
+    }
+}
@@ -0,0 +1,124 @@
+package ServiceTests;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.Json;
+import services.ChatHub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ChatHubTest {
+
+    private ActorSystem actorSystem;
+    private ChatHub chatHub;
+
+    @Before
+    public void setUp() {
+        actorSystem = ActorSystem.create("chatHub");
+        chatHub = new ChatHub();
+    }
+
+    @After
+    public void shutdownActorSystem() {
+        actorSystem.terminate();
+    }
+
+    @Test
+    public void testPublish_thenEverySocketOfTheUserReceivesIt() throws InterruptedException {
+        BlockingQueue<Object> first = new LinkedBlockingQueue<>();
+        BlockingQueue<Object> second = new LinkedBlockingQueue<>();
+        BlockingQueue<Object> otherUser = new LinkedBlockingQueue<>();
+        chatHub.register(1, recorder(first));
+        chatHub.register(1, recorder(second));
+        chatHub.register(2, recorder(otherUser));
+        JsonNode message = Json.newObject().put("message_text", "hi");
+
+        assertEquals(2, chatHub.publish(1, message));
+
+        assertEquals(message, ((ChatHub.Push) first.poll(5, TimeUnit.SECONDS)).getMessage());
+        assertEquals(message, ((ChatHub.Push) second.poll(5, TimeUnit.SECONDS)).getMessage());
+        assertNull(otherUser.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPublish_whenNoSocket_thenNobodyReceivesIt() {
+        assertEquals(0, chatHub.publish(1, Json.newObject()));
+    }
+
+    @Test
+    public void testUnregister_thenSocketNoLongerReceives() throws InterruptedException {
+        BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        ActorRef socket = recorder(received);
+        chatHub.register(1, socket);
+
+        chatHub.unregister(1, socket);
+
+        assertEquals(0, chatHub.getOpenSockets(1));
+        assertEquals(0, chatHub.publish(1, Json.newObject()));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRegister_whileOldSocketCloses_thenNewSocketKept() throws InterruptedException {
+        // a page reload closes the old socket while the new one opens
+        for (int round = 0; round < 200; round++) {
+            ActorRef oldSocket = recorder(new LinkedBlockingQueue<>());
+            ActorRef newSocket = recorder(new LinkedBlockingQueue<>());
+            chatHub.register(1, oldSocket);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                chatHub.unregister(1, oldSocket);
+            }));
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                chatHub.register(1, newSocket);
+            }));
+            for (Thread thread : threads) thread.start();
+            start.countDown();
+            for (Thread thread : threads) thread.join();
+
+            assertEquals(1, chatHub.getOpenSockets(1));
+            chatHub.unregister(1, newSocket);
+        }
+    }
+
+    private ActorRef recorder(BlockingQueue<Object> received) {
+        return actorSystem.actorOf(Props.create(Recorder.class, () -> new Recorder(received)));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Recorder extends AbstractActor {
+        private final BlockingQueue<Object> received;
+
+        Recorder(BlockingQueue<Object> received) {
+            this.received = received;
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().matchAny(received::add).build();
+        }
+    }
+}